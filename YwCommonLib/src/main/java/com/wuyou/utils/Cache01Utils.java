@@ -11,35 +11,74 @@ import android.graphics.Canvas;
 import android.graphics.PixelFormat;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.Process;
+import android.os.StatFs;
+import android.system.ErrnoException;
+import android.system.Os;
 
+import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
-import androidx.collection.SimpleArrayMap;
+import androidx.collection.LruCache;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * <pre>
@@ -59,8 +98,68 @@ public final class Cache01Utils {
     public static final int HOUR = 3600;
     public static final int DAY  = 86400;
 
-    private static final SimpleArrayMap<String, Cache01Utils> CACHE_MAP = new SimpleArrayMap<>();
+    /**
+     * 存储引擎：每个键一个文件
+     */
+    public static final int STORE_FILE    = 0;
+    /**
+     * 存储引擎：条目打包进少数几个内存映射的段文件，适合大量小条目
+     */
+    public static final int STORE_SEGMENT = 1;
+    /**
+     * 存储引擎：每个键一个文件，多个进程共用同一目录
+     * <p>修改时通过文件锁串行化并回放其他进程的日志，各进程的索引与淘汰保持一致；写入比 {@link #STORE_FILE} 多一次加锁与刷盘</p>
+     * <p>内存层与 Bitmap 层仍是进程内的，不会感知其他进程的修改，需要读到其他进程最新写入的键不要开启</p>
+     */
+    public static final int STORE_FILE_MULTI_PROCESS = 2;
+
+    @IntDef({STORE_FILE, STORE_SEGMENT, STORE_FILE_MULTI_PROCESS})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Store {
+    }
+
+    /**
+     * 实例表，已创建的实例直接无锁读取；创建需要读日志，按键分片加锁，不同目录的首次获取互不阻塞
+     */
+    private static final ConcurrentHashMap<String, Cache01Utils> CACHE_MAP    = new ConcurrentHashMap<>();
+    private static final Object[]                                CREATE_LOCKS = new Object[16];
+
+    static {
+        for (int i = 0; i < CREATE_LOCKS.length; i++) {
+            CREATE_LOCKS[i] = new Object();
+        }
+    }
+
+    /**
+     * 每次持锁清理的最大条目数，清理大量过期条目时分批进行，不长时间阻塞读写
+     */
+    private static final int SWEEP_BATCH = 64;
+
+    /**
+     * 启动访问集保存在缓存中的键，以及最多记录的键数
+     */
+    private static final String STARTUP_PROFILE_KEY = "Cache01Utils.startupProfile";
+    private static final int    MAX_PROFILE_KEYS    = 1024;
+
+    private static volatile ScheduledExecutorService sSweepExecutor;
+
+    private static final int IO_THREADS        = 2;
+    private static final int IO_QUEUE_CAPACITY = 256;
+
+    private static volatile ExecutorService sIoExecutor;
+    private static volatile Handler         sMainHandler;
+
+    private final String mCacheKey;
     private CacheManager mCacheManager;
+    private volatile MemoryCache mMemoryCache;
+    private volatile int         mCompressThreshold;
+    private volatile BitmapCache mBitmapCache;
+    private volatile AccessRecorder mAccessRecorder;
+    private ScheduledFuture<?>   mSweepFuture;
+
+    private final ConcurrentHashMap<String, PendingWrite> mPendingWrites = new ConcurrentHashMap<>();
+    private final StatsCounter                            mStats         = new StatsCounter();
+    private ScheduledFuture<?>                            mStatsFuture;
 
     /**
      * 获取缓存实例
@@ -137,20 +236,110 @@ public final class Cache01Utils {
      * @return {@link CacheUtils}
      */
     public static Cache01Utils getInstance(@NonNull final File cacheDir, final long maxSize, final int maxCount) {
-        final String cacheKey = cacheDir.getAbsoluteFile() + "_" + Process.myPid();
+        return getInstance(cacheDir, maxSize, maxCount, STORE_FILE);
+    }
+
+    /**
+     * 获取缓存实例
+     * <p>在 cacheDir 目录，{@link #STORE_SEGMENT} 的段文件在其下的 segments 子目录</p>
+     * <p>maxSize 按实际占用的磁盘空间计算，见 {@link #getCachePhysicalSize()}</p>
+     * <p>{@link #STORE_FILE} 与 {@link #STORE_FILE_MULTI_PROCESS} 的数据格式相同，段存储与它们互不相通，同一目录应固定使用一种；
+     * 多个进程共用的目录每个进程都要使用 {@link #STORE_FILE_MULTI_PROCESS}</p>
+     *
+     * @param cacheDir 缓存目录
+     * @param maxSize  最大缓存尺寸，单位字节
+     * @param maxCount 最大缓存个数
+     * @param store    存储引擎，{@link #STORE_FILE}、{@link #STORE_SEGMENT} 或 {@link #STORE_FILE_MULTI_PROCESS}
+     * @return {@link CacheUtils}
+     */
+    public static Cache01Utils getInstance(@NonNull final File cacheDir, final long maxSize, final int maxCount,
+                                           @Store final int store) {
+        final String cacheKey = cacheDir.getAbsoluteFile() + "_" + store + "_" + Process.myPid();
         Cache01Utils cache = CACHE_MAP.get(cacheKey);
-        if (cache == null) {
-            cache = new Cache01Utils(cacheDir, maxSize, maxCount);
-            CACHE_MAP.put(cacheKey, cache);
+        if (cache != null) return cache;
+        synchronized (CREATE_LOCKS[(cacheKey.hashCode() & 0x7fffffff) % CREATE_LOCKS.length]) {
+            cache = CACHE_MAP.get(cacheKey);
+            if (cache == null) {
+                cache = new Cache01Utils(cacheKey, cacheDir, maxSize, maxCount, store);
+                CACHE_MAP.put(cacheKey, cache);
+            }
         }
         return cache;
     }
 
-    private Cache01Utils(@NonNull final File cacheDir, final long maxSize, final int maxCount) {
+    private Cache01Utils(final String cacheKey, @NonNull final File cacheDir, final long maxSize, final int maxCount,
+                         final int store) {
         if (!cacheDir.exists() && !cacheDir.mkdirs()) {
             throw new RuntimeException("can't make dirs in " + cacheDir.getAbsolutePath());
         }
-        mCacheManager = new CacheManager(cacheDir, maxSize, maxCount);
+        mCacheKey = cacheKey;
+        mCacheManager = new CacheManager(cacheDir, maxSize, maxCount, store);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 内存层
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 开启内存层
+     * <p>写入时同步写入内存，读取磁盘后提升到内存</p>
+     *
+     * @param maxBytes 内存层最大尺寸，单位字节，{@code <= 0} 关闭内存层
+     * @return {@link Cache01Utils}
+     */
+    public Cache01Utils setMemoryCache(final int maxBytes) {
+        return setMemoryCache(maxBytes, true, true);
+    }
+
+    /**
+     * 开启内存层
+     * <p>内存层与磁盘共用过期时间，按字节数做 LRU 淘汰，Bitmap 按实际占用的内存计算</p>
+     *
+     * @param maxBytes      内存层最大尺寸，单位字节，{@code <= 0} 关闭内存层
+     * @param writeThrough  写入时是否同步写入内存，否则只让内存中的旧值失效
+     * @param promoteOnRead 从磁盘读到后是否放入内存
+     * @return {@link Cache01Utils}
+     */
+    public Cache01Utils setMemoryCache(final int maxBytes, final boolean writeThrough, final boolean promoteOnRead) {
+        final MemoryCache old = mMemoryCache;
+        mMemoryCache = maxBytes <= 0 ? null : new MemoryCache(maxBytes, writeThrough, promoteOnRead);
+        if (old != null) old.clear();
+        return this;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 压缩
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 开启压缩
+     * <p>达到阈值的条目用 Deflate（BEST_SPEED）压缩后写入磁盘，压缩后不变小的按原样保存，读取时透明解压</p>
+     * <p>只影响之后的写入，已有条目照常读取</p>
+     *
+     * @param thresholdBytes 压缩阈值，单位字节，{@code <= 0} 关闭压缩
+     * @return {@link Cache01Utils}
+     */
+    public Cache01Utils setCompression(final int thresholdBytes) {
+        mCompressThreshold = thresholdBytes;
+        return this;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 准入
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 开启按访问频率的准入（TinyLFU）
+     * <p>读写都会计入键的近期频率；缓存满时新键要挤掉的最久未使用条目的频率之和不低于它自身的频率，就丢弃新键而不是淘汰旧条目。
+     * 只扫过一次的键挤不掉热点，一个大条目也挤不掉一批常用的小条目</p>
+     * <p>已存在的键更新时不做准入检查；被拒绝的次数见 {@link CacheStats#getAdmissionRejectedCount()}</p>
+     *
+     * @param expectedEntries 预计的条目数，决定频率表的大小，{@code <= 0} 关闭准入，恢复纯 LRU
+     * @return {@link Cache01Utils}
+     */
+    public Cache01Utils setAdmission(final int expectedEntries) {
+        mCacheManager.admission = expectedEntries <= 0 ? null : new CacheAdmission(expectedEntries);
+        return this;
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -176,12 +365,7 @@ public final class Cache01Utils {
      */
     public void put(@NonNull final String key, @NonNull byte[] value, final int saveTime) {
         if (value.length <= 0) return;
-        if (saveTime >= 0) value = CacheHelper.newByteArrayWithTime(saveTime, value);
-        File file = mCacheManager.getFileBeforePut(key);
-        CacheHelper.writeFileFromBytes(file, value);
-        mCacheManager.updateModify(file);
-        mCacheManager.put(file);
-
+        putInternal(key, CacheHelper.TYPE_BYTES, value, mMemoryCache == null ? null : value.clone(), saveTime);
     }
 
     /**
@@ -202,15 +386,73 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public byte[] getBytes(@NonNull final String key, final byte[] defaultValue) {
-        final File file = mCacheManager.getFileIfExists(key);
-        if (file == null) return defaultValue;
-        byte[] data = CacheHelper.readFile2Bytes(file);
-        if (CacheHelper.isDue(data)) {
+        final byte[] data = getPayload(key);
+        if (data == null) return defaultValue;
+        // 内存层持有同一数组，返回副本避免被调用方修改
+        return mMemoryCache == null ? data : data.clone();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 流读写
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 打开写入流，适合大数据，数据按固定大小的缓冲写入磁盘而不整体占用内存
+     * <p>数据先写入临时文件，{@link OutputStream#close()} 时改名为正式文件，读取方不会读到写了一半的数据</p>
+     * <p>写入过程出错或超过最大缓存尺寸时，关闭后丢弃本次写入；开启准入后新键未通过准入时，关闭时抛出 {@link IOException}</p>
+     *
+     * @param key 键
+     * @return 写入流，用完必须关闭
+     * @throws IOException 创建临时文件失败
+     */
+    public OutputStream openWriter(@NonNull final String key) throws IOException {
+        return openWriter(key, -1);
+    }
+
+    /**
+     * 打开写入流，适合大数据，数据按固定大小的缓冲写入磁盘而不整体占用内存
+     * <p>数据先写入临时文件，{@link OutputStream#close()} 时改名为正式文件，读取方不会读到写了一半的数据</p>
+     * <p>写入过程出错或超过最大缓存尺寸时，关闭后丢弃本次写入；开启准入后新键未通过准入时，关闭时抛出 {@link IOException}</p>
+     *
+     * @param key      键
+     * @param saveTime 保存时长，单位：秒
+     * @return 写入流，用完必须关闭
+     * @throws IOException 创建临时文件失败
+     */
+    public OutputStream openWriter(@NonNull final String key, final int saveTime) throws IOException {
+        final long expireMillis = saveTime >= 0 ? System.currentTimeMillis() + saveTime * 1000L : -1;
+        return new EntryOutputStream(key, CacheHelper.TYPE_BYTES, expireMillis);
+    }
+
+    /**
+     * 打开读取流，适合大数据，不会一次把数据全部读入内存
+     *
+     * @param key 键
+     * @return 存在且没过期返回读取流，用完必须关闭，否则返回{@code null}
+     */
+    public InputStream openReader(@NonNull final String key) {
+        final Object cached = getFromMemory(key, byte[].class);
+        if (cached instanceof byte[]) return new ByteArrayInputStream((byte[]) cached);
+        try {
+            final CacheHelper.PayloadInputStream in = mCacheManager.openPayload(key);
+            if (in == null) {
+                mStats.missCount.incrementAndGet();
+                return null;
+            }
+            if (!in.header.isDue()) {
+                mStats.diskHitCount.incrementAndGet();
+                mStats.bytesRead.addAndGet(in.header.payloadLength);
+                return CacheHelper.decoding(in);
+            }
+            CloseUtils.closeIOQuietly(in);
+            mStats.expiredCount.incrementAndGet();
+            mStats.missCount.incrementAndGet();
             mCacheManager.removeByKey(key);
-            return defaultValue;
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
         }
-        mCacheManager.updateModify(file);
-        return CacheHelper.getDataWithoutDueTime(data);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -235,7 +477,7 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final String value, final int saveTime) {
-        put(key, CacheHelper.string2Bytes(value), saveTime);
+        putInternal(key, CacheHelper.TYPE_STRING, CacheHelper.string2Bytes(value), value, saveTime);
     }
 
     /**
@@ -256,9 +498,13 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public String getString(@NonNull final String key, final String defaultValue) {
-        byte[] bytes = getBytes(key);
+        final Object cached = getFromMemory(key, String.class, byte[].class);
+        if (cached instanceof String) return (String) cached;
+        final byte[] bytes = cached instanceof byte[] ? (byte[]) cached : getBytesFromDisk(key);
         if (bytes == null) return defaultValue;
-        return CacheHelper.bytes2String(bytes);
+        final String value = CacheHelper.bytes2String(bytes);
+        promoteToMemory(key, value);
+        return value;
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -283,7 +529,8 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final JSONObject value, final int saveTime) {
-        put(key, CacheHelper.jsonObject2Bytes(value), saveTime);
+        final byte[] bytes = CacheHelper.jsonObject2Bytes(value);
+        putInternal(key, CacheHelper.TYPE_JSON_OBJECT, bytes, bytes, saveTime);
     }
 
     /**
@@ -304,7 +551,7 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public JSONObject getJSONObject(@NonNull final String key, final JSONObject defaultValue) {
-        byte[] bytes = getBytes(key);
+        byte[] bytes = getPayload(key);
         if (bytes == null) return defaultValue;
         return CacheHelper.bytes2JSONObject(bytes);
     }
@@ -332,7 +579,8 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final JSONArray value, final int saveTime) {
-        put(key, CacheHelper.jsonArray2Bytes(value), saveTime);
+        final byte[] bytes = CacheHelper.jsonArray2Bytes(value);
+        putInternal(key, CacheHelper.TYPE_JSON_ARRAY, bytes, bytes, saveTime);
     }
 
     /**
@@ -353,7 +601,7 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public JSONArray getJSONArray(@NonNull final String key, final JSONArray defaultValue) {
-        byte[] bytes = getBytes(key);
+        byte[] bytes = getPayload(key);
         if (bytes == null) return defaultValue;
         return CacheHelper.bytes2JSONArray(bytes);
     }
@@ -381,7 +629,7 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final Bitmap value, final int saveTime) {
-        put(key, CacheHelper.bitmap2Bytes(value), saveTime);
+        putInternal(key, CacheHelper.TYPE_BITMAP, encodeBitmap(value), value, saveTime);
     }
 
     /**
@@ -402,9 +650,129 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public Bitmap getBitmap(@NonNull final String key, final Bitmap defaultValue) {
-        byte[] bytes = getBytes(key);
+        if (mBitmapCache != null) {
+            final Bitmap bitmap = getBitmap(key, 0, 0);
+            return bitmap == null ? defaultValue : bitmap;
+        }
+        final Object cached = getFromMemory(key, Bitmap.class, byte[].class);
+        if (cached instanceof Bitmap) return (Bitmap) cached;
+        final byte[] bytes = cached instanceof byte[] ? (byte[]) cached : getBytesFromDisk(key);
         if (bytes == null) return defaultValue;
-        return CacheHelper.bytes2Bitmap(bytes);
+        final Bitmap bitmap = CacheHelper.bytes2Bitmap(bytes);
+        if (bitmap != null) promoteToMemory(key, bitmap);
+        return bitmap;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Bitmap 缓存模式
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 开启 Bitmap 缓存模式，磁盘用 WebP 保存
+     *
+     * @param memoryBytes 解码结果的内存 LRU 最大尺寸，单位字节
+     * @param poolBytes   inBitmap 复用池最大尺寸，单位字节
+     * @return {@link Cache01Utils}
+     * @see #setBitmapCache(int, int, Bitmap.CompressFormat, int)
+     */
+    public Cache01Utils setBitmapCache(final int memoryBytes, final int poolBytes) {
+        return setBitmapCache(memoryBytes, poolBytes, CacheHelper.webpFormat(), 90);
+    }
+
+    /**
+     * 开启 Bitmap 缓存模式
+     * <p>{@link #put(String, Bitmap)} 按指定格式编码，{@link #putEncodedBitmap(String, byte[])} 原样保存已编码的数据</p>
+     * <p>读取时按目标尺寸采样解码，解码优先复用池中的 Bitmap，结果按实际占用的字节数做 LRU 缓存</p>
+     *
+     * @param memoryBytes 解码结果的内存 LRU 最大尺寸，单位字节
+     * @param poolBytes   inBitmap 复用池最大尺寸，单位字节
+     * @param format      磁盘编码格式
+     * @param quality     编码质量，0 到 100
+     * @return {@link Cache01Utils}
+     */
+    public Cache01Utils setBitmapCache(final int memoryBytes, final int poolBytes,
+                                       @NonNull final Bitmap.CompressFormat format, final int quality) {
+        final BitmapCache old = mBitmapCache;
+        mBitmapCache = memoryBytes <= 0 && poolBytes <= 0 ? null : new BitmapCache(memoryBytes, poolBytes, format, quality);
+        if (old != null) {
+            old.memory.evictAll();
+            old.pool.clear();
+        }
+        return this;
+    }
+
+    /**
+     * 原样保存已编码的图片数据，如网络下载的原图，不再重新编码
+     *
+     * @param key     键
+     * @param encoded 已编码的图片数据
+     */
+    public void putEncodedBitmap(@NonNull final String key, @NonNull final byte[] encoded) {
+        putEncodedBitmap(key, encoded, -1);
+    }
+
+    /**
+     * 原样保存已编码的图片数据，如网络下载的原图，不再重新编码
+     *
+     * @param key      键
+     * @param encoded  已编码的图片数据
+     * @param saveTime 保存时长，单位：秒
+     */
+    public void putEncodedBitmap(@NonNull final String key, @NonNull final byte[] encoded, final int saveTime) {
+        if (encoded.length <= 0) return;
+        putInternal(key, CacheHelper.TYPE_BITMAP, encoded, null, saveTime);
+    }
+
+    /**
+     * 按目标尺寸读取 Bitmap，以 2 的幂次采样，结果不小于目标尺寸
+     * <p>开启 Bitmap 缓存模式时复用池中的 Bitmap 解码，并缓存解码结果；缓存的 Bitmap 是共享的，不要修改或回收</p>
+     *
+     * @param key       键
+     * @param reqWidth  目标宽，{@code <= 0} 表示原尺寸
+     * @param reqHeight 目标高，{@code <= 0} 表示原尺寸
+     * @return 存在且没过期返回对应值，否则返回{@code null}
+     */
+    public Bitmap getBitmap(@NonNull final String key, final int reqWidth, final int reqHeight) {
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache != null) {
+            final Bitmap cached = bitmapCache.get(key, reqWidth, reqHeight);
+            if (cached != null) {
+                recordAccess(key);
+                mStats.memoryHitCount.incrementAndGet();
+                return cached;
+            }
+        }
+        final byte[] bytes = getPayload(key);
+        if (bytes == null) return null;
+        if (bitmapCache == null) {
+            return CacheBitmapPool.decode(bytes, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, null);
+        }
+        final Bitmap bitmap = CacheBitmapPool.decode(bytes, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, bitmapCache.pool);
+        if (bitmap != null) bitmapCache.put(key, bitmap, reqWidth, reqHeight, mCacheManager.getExpireMillis(key));
+        return bitmap;
+    }
+
+    /**
+     * 把不再使用的 Bitmap 交给复用池，供之后解码时作为 inBitmap
+     * <p>交出后调用方不可再使用该 Bitmap；{@link #getBitmap(String, int, int)} 缓存中的共享 Bitmap 不要交出</p>
+     *
+     * @param bitmap 不再使用的 Bitmap
+     */
+    public void releaseBitmap(@NonNull final Bitmap bitmap) {
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache == null) return;
+        bitmapCache.pool.put(bitmap);
+    }
+
+    private byte[] encodeBitmap(final Bitmap bitmap) {
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache == null) return CacheHelper.bitmap2Bytes(bitmap);
+        return CacheHelper.bitmap2Bytes(bitmap, bitmapCache.format, bitmapCache.quality);
+    }
+
+    private void invalidateBitmap(final String key) {
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache != null) bitmapCache.memory.remove(key);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -418,7 +786,7 @@ public final class Cache01Utils {
      * @param value 值
      */
     public void put(@NonNull final String key, @NonNull final Drawable value) {
-        put(key, CacheHelper.drawable2Bytes(value));
+        put(key, value, -1);
     }
 
     /**
@@ -429,7 +797,7 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final Drawable value, final int saveTime) {
-        put(key, CacheHelper.drawable2Bytes(value), saveTime);
+        put(key, CacheHelper.drawable2Bitmap(value), saveTime);
     }
 
     /**
@@ -450,9 +818,9 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public Drawable getDrawable(@NonNull final String key, final Drawable defaultValue) {
-        byte[] bytes = getBytes(key);
-        if (bytes == null) return defaultValue;
-        return CacheHelper.bytes2Drawable(bytes);
+        final Bitmap bitmap = getBitmap(key);
+        if (bitmap == null) return defaultValue;
+        return CacheHelper.bitmap2Drawable(bitmap);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -477,7 +845,8 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final Parcelable value, final int saveTime) {
-        put(key, CacheHelper.parcelable2Bytes(value), saveTime);
+        final byte[] bytes = CacheHelper.parcelable2Bytes(value);
+        putInternal(key, CacheHelper.TYPE_PARCELABLE, bytes, bytes, saveTime);
     }
 
     /**
@@ -500,7 +869,7 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public <T> T getParcelable(@NonNull final String key, @NonNull final Parcelable.Creator<T> creator, final T defaultValue) {
-        byte[] bytes = getBytes(key);
+        byte[] bytes = getPayload(key);
         if (bytes == null) return defaultValue;
         return CacheHelper.bytes2Parcelable(bytes, creator);
     }
@@ -527,7 +896,8 @@ public final class Cache01Utils {
      * @param saveTime 保存时长，单位：秒
      */
     public void put(@NonNull final String key, @NonNull final Serializable value, final int saveTime) {
-        put(key, CacheHelper.serializable2Bytes(value), saveTime);
+        final byte[] bytes = CacheHelper.serializable2Bytes(value);
+        putInternal(key, CacheHelper.TYPE_SERIALIZABLE, bytes, bytes, saveTime);
     }
 
     /**
@@ -548,15 +918,106 @@ public final class Cache01Utils {
      * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
      */
     public Object getSerializable(@NonNull final String key, final Object defaultValue) {
-        byte[] bytes = getBytes(key);
+        byte[] bytes = getPayload(key);
         if (bytes == null) return defaultValue;
-        return CacheHelper.bytes2Object(getBytes(key));
+        return CacheHelper.bytes2Object(bytes);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 编解码器读写
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 使用编解码器写入，编码结果直接流式写入磁盘
+     * <p>内置的编解码器见 {@link CacheCodecs}</p>
+     *
+     * @param key   键
+     * @param value 值
+     * @param codec 编解码器
+     */
+    public <T> void put(@NonNull final String key, @NonNull final T value, @NonNull final Codec<T> codec) {
+        put(key, value, codec, -1);
+    }
+
+    /**
+     * 使用编解码器写入，编码结果直接流式写入磁盘
+     * <p>内置的编解码器见 {@link CacheCodecs}</p>
+     *
+     * @param key      键
+     * @param value    值
+     * @param codec    编解码器
+     * @param saveTime 保存时长，单位：秒
+     */
+    public <T> void put(@NonNull final String key, @NonNull final T value, @NonNull final Codec<T> codec, final int saveTime) {
+        final long start = System.nanoTime();
+        final long expireMillis = saveTime >= 0 ? System.currentTimeMillis() + saveTime * 1000L : -1;
+        EntryOutputStream out = null;
+        try {
+            out = new EntryOutputStream(key, CacheHelper.TYPE_CODEC, expireMillis);
+            codec.encode(value, out);
+            out.close();
+            mStats.putLatency.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            // 编码失败时 close 会丢弃临时文件
+            CloseUtils.closeIOQuietly(out);
+        }
+    }
+
+    /**
+     * 使用编解码器读取，直接从文件流解码
+     *
+     * @param key   键
+     * @param codec 编解码器
+     * @return 存在且没过期返回对应值，否则返回{@code null}
+     */
+    public <T> T get(@NonNull final String key, @NonNull final Codec<T> codec) {
+        return get(key, codec, null);
+    }
+
+    /**
+     * 使用编解码器读取，直接从文件流解码
+     * <p>解码失败（包括编解码器抛出的运行时异常）或校验和不符时删除该条目</p>
+     *
+     * @param key          键
+     * @param codec        编解码器
+     * @param defaultValue 默认值
+     * @return 存在且没过期返回对应值，否则返回默认值{@code defaultValue}
+     */
+    public <T> T get(@NonNull final String key, @NonNull final Codec<T> codec, final T defaultValue) {
+        final long start = System.nanoTime();
+        final InputStream in = openReader(key);
+        if (in == null) return defaultValue;
+        try {
+            final T value = codec.decode(in);
+            // 读到末尾才会校验 CRC
+            final byte[] rest = new byte[256];
+            while (in.read(rest) != -1) ;
+            mStats.loadLatency.record(System.nanoTime() - start);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            remove(key);
+            return defaultValue;
+        } finally {
+            CloseUtils.closeIOQuietly(in);
+        }
+    }
+
+    /**
+     * 值的编解码器
+     * <p>编码写入的流由缓存负责关闭，实现方只需写完数据；解码时只读取自己写入的部分</p>
+     */
+    public interface Codec<T> {
+        void encode(@NonNull T value, @NonNull OutputStream out) throws IOException;
+
+        T decode(@NonNull InputStream in) throws IOException;
     }
 
     /**
      * 获取缓存大小
-     * <p>单位：字节</p>
-     * <p>调用了 Thread.join()，需异步调用，否则可能主线程会卡顿</p>
+     * <p>单位：字节，条目数据长度之和</p>
      *
      * @return 缓存大小
      */
@@ -564,9 +1025,19 @@ public final class Cache01Utils {
         return mCacheManager.getCacheSize();
     }
 
+    /**
+     * 获取缓存实际占用的磁盘空间
+     * <p>单位：字节；逐文件存储时每个文件按文件系统的块大小向上取整，一个 100 字节的条目占一整块，maxSize 按它淘汰；
+     * 段存储为段文件已写入部分占用的块，含尚未压缩掉的失效记录</p>
+     *
+     * @return 实际占用的磁盘空间
+     */
+    public long getCachePhysicalSize() {
+        return mCacheManager.getPhysicalSize();
+    }
+
     /**
      * 获取缓存个数
-     * <p>调用了 Thread.join()，需异步调用，否则可能主线程会卡顿</p>
      *
      * @return 缓存个数
      */
@@ -581,6 +1052,9 @@ public final class Cache01Utils {
      * @return {@code true}: 移除成功<br>{@code false}: 移除失败
      */
     public boolean remove(@NonNull final String key) {
+        invalidateBitmap(key);
+        final MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache != null) memoryCache.remove(key);
         return mCacheManager.removeByKey(key);
     }
 
@@ -590,243 +1064,2102 @@ public final class Cache01Utils {
      * @return {@code true}: 清除成功<br>{@code false}: 清除失败
      */
     public boolean clear() {
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache != null) bitmapCache.memory.evictAll();
+        final MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache != null) memoryCache.clear();
         return mCacheManager.clear();
     }
 
-    private class CacheManager {
-        private final AtomicLong cacheSize;
-        private final AtomicInteger cacheCount;
-        private final long          sizeLimit;
-        private final int           countLimit;
-        private final Map<File, Long> lastUsageDates = Collections.synchronizedMap(new HashMap<File, Long>());
-        private final File   cacheDir;
-        private final Thread mThread;
-
-        private CacheManager(final File cacheDir, final long sizeLimit, final int countLimit) {
-            this.cacheDir = cacheDir;
-            this.sizeLimit = sizeLimit;
-            this.countLimit = countLimit;
-            cacheSize = new AtomicLong();
-            cacheCount = new AtomicInteger();
-            mThread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    int size = 0;
-                    int count = 0;
-                    final File[] cachedFiles = cacheDir.listFiles();
-                    if (cachedFiles != null) {
-                        for (File cachedFile : cachedFiles) {
-                            size += cachedFile.length();
-                            count += 1;
-                            lastUsageDates.put(cachedFile, cachedFile.lastModified());
-                        }
-                        cacheSize.getAndAdd(size);
-                        cacheCount.getAndAdd(count);
-                    }
-                }
-            });
-            mThread.start();
+    /**
+     * 关闭实例并从实例表中移除
+     * <p>排队中的异步写入在当前线程写完，停止定时任务，清空内存层，日志或段文件刷盘后关闭</p>
+     * <p>关闭后不可再使用该实例，再次 {@code getInstance} 会重新打开</p>
+     */
+    public void close() {
+        for (String key : mPendingWrites.keySet()) {
+            awaitPendingWrite(key);
         }
-
-        private long getCacheSize() {
-            try {
-                mThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            return cacheSize.get();
+        stopExpirySweeper();
+        setOnStatsListener(0, null);
+        final BitmapCache bitmapCache = mBitmapCache;
+        if (bitmapCache != null) {
+            bitmapCache.memory.evictAll();
+            bitmapCache.pool.clear();
         }
-
-        private int getCacheCount() {
-            try {
-                mThread.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            return cacheCount.get();
+        final MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache != null) memoryCache.clear();
+        synchronized (CREATE_LOCKS[(mCacheKey.hashCode() & 0x7fffffff) % CREATE_LOCKS.length]) {
+            mCacheManager.close();
+            CACHE_MAP.remove(mCacheKey, this);
         }
+    }
 
-        private File getFileBeforePut(final String key) {
-            File file = new File(cacheDir, String.valueOf(key.hashCode()));
-            if (file.exists()) {
-                cacheCount.addAndGet(-1);
-                cacheSize.addAndGet(-file.length());
-            }
-            return file;
-        }
+    ///////////////////////////////////////////////////////////////////////////
+    // 异步读写
+    ///////////////////////////////////////////////////////////////////////////
 
-        private File getFileIfExists(final String key) {
-            File file = new File(cacheDir, String.valueOf(key.hashCode()));
-            if (!file.exists()) return null;
-            return file;
-        }
+    /**
+     * 异步写入缓存
+     *
+     * @param key   键
+     * @param value 值，支持 byte[]、String、JSONObject、JSONArray、Bitmap、Drawable、Parcelable、Serializable
+     * @return 写入结果
+     */
+    public Future<Boolean> putAsync(@NonNull final String key, @NonNull final Object value) {
+        return putAsync(key, value, -1, null);
+    }
 
-        private void put(final File file) {
-            cacheCount.addAndGet(1);
-            cacheSize.addAndGet(file.length());
-            while (cacheCount.get() > countLimit || cacheSize.get() > sizeLimit) {
-                cacheSize.addAndGet(-removeOldest());
-                cacheCount.addAndGet(-1);
+    /**
+     * 异步写入缓存
+     * <p>在共用的有界 IO 线程池上执行，同一个键尚未开始的写入会被合并，只写最后一次的值</p>
+     * <p>之后对同一个键的异步读取能读到这次写入的值</p>
+     *
+     * @param key      键
+     * @param value    值，支持 byte[]、String、JSONObject、JSONArray、Bitmap、Drawable、Parcelable、Serializable
+     * @param saveTime 保存时长，单位：秒
+     * @param callback 写入完成的回调，在主线程回调，可为{@code null}
+     * @return 写入结果，写入失败或新键未通过准入时为{@code false}
+     */
+    public Future<Boolean> putAsync(@NonNull final String key, @NonNull Object value, final int saveTime,
+                                    final Callback<Boolean> callback) {
+        checkValueType(value);
+        // 调用方之后可能修改数组，提交时先拷贝
+        if (value instanceof byte[]) value = ((byte[]) value).clone();
+        while (true) {
+            final PendingWrite pending = mPendingWrites.get(key);
+            if (pending != null && pending.merge(value, saveTime, callback)) return pending.future;
+            final PendingWrite created = new PendingWrite(key, value, saveTime, callback);
+            if (mPendingWrites.putIfAbsent(key, created) == null) {
+                getIoExecutor().execute(created.future);
+                return created.future;
             }
         }
+    }
 
-        private void updateModify(final File file) {
-            Long millis = System.currentTimeMillis();
-            file.setLastModified(millis);
-            lastUsageDates.put(file, millis);
-        }
-
-        private boolean removeByKey(final String key) {
-            File file = getFileIfExists(key);
-            if (file == null) return true;
-            if (!file.delete()) return false;
-            cacheSize.addAndGet(-file.length());
-            cacheCount.addAndGet(-1);
-            lastUsageDates.remove(file);
-            return true;
+    /**
+     * 异步批量写入缓存，日志在整批写完后一次刷盘
+     *
+     * @param values   键值对，值支持的类型同 {@link #putAsync(String, Object, int, Callback)}
+     * @param saveTime 保存时长，单位：秒
+     * @param callback 写入完成的回调，参数为全部写入成功与否，在主线程回调，可为{@code null}
+     * @return 写入结果，全部写入成功为{@code true}
+     */
+    public Future<Boolean> putAll(@NonNull final Map<String, ?> values, final int saveTime,
+                                  final Callback<Boolean> callback) {
+        final Map<String, Object> snapshot = new LinkedHashMap<>(values.size());
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            checkValueType(value);
+            if (value instanceof byte[]) value = ((byte[]) value).clone();
+            snapshot.put(entry.getKey(), value);
         }
-
-        private boolean clear() {
-            File[] files = cacheDir.listFiles();
-            if (files == null || files.length <= 0) return true;
-            boolean flag = true;
-            for (File file : files) {
-                if (!file.delete()) {
-                    flag = false;
-                    continue;
+        final FutureTask<Boolean> task = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean success = true;
+                mCacheManager.beginBatch();
+                try {
+                    for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                        // 先完成排在前面的同键写入，保证最终是这次的值
+                        awaitPendingWrite(entry.getKey());
+                        success &= putValue(entry.getKey(), entry.getValue(), saveTime);
+                    }
+                } finally {
+                    mCacheManager.endBatch();
                 }
-                cacheSize.addAndGet(-file.length());
-                cacheCount.addAndGet(-1);
-                lastUsageDates.remove(file);
+                deliver(callback, success);
+                return success;
             }
-            if (flag) {
-                lastUsageDates.clear();
-                cacheSize.set(0);
-                cacheCount.set(0);
+        });
+        getIoExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * 异步读取字节数组
+     *
+     * @param key      键
+     * @param callback 读取完成的回调，不存在或已过期时参数为{@code null}，在主线程回调，可为{@code null}
+     * @return 读取结果
+     */
+    public Future<byte[]> getAsync(@NonNull final String key, final Callback<byte[]> callback) {
+        final FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                awaitPendingWrite(key);
+                final byte[] result = getBytes(key);
+                deliver(callback, result);
+                return result;
             }
-            return flag;
-        }
+        });
+        getIoExecutor().execute(task);
+        return task;
+    }
 
-        /**
-         * 移除旧的文件
-         *
-         * @return 移除的字节数
-         */
-        private long removeOldest() {
-            if (lastUsageDates.isEmpty()) return 0;
-            Long oldestUsage = Long.MAX_VALUE;
-            File oldestFile = null;
-            Set<Map.Entry<File, Long>> entries = lastUsageDates.entrySet();
-            synchronized (lastUsageDates) {
-                for (Map.Entry<File, Long> entry : entries) {
-                    Long lastValueUsage = entry.getValue();
-                    if (lastValueUsage < oldestUsage) {
-                        oldestUsage = lastValueUsage;
-                        oldestFile = entry.getKey();
-                    }
+    /**
+     * 异步批量读取字节数组
+     *
+     * @param keys     键
+     * @param callback 读取完成的回调，只包含存在且没过期的键，在主线程回调，可为{@code null}
+     * @return 读取结果
+     */
+    public Future<Map<String, byte[]>> getAll(@NonNull final Collection<String> keys,
+                                              final Callback<Map<String, byte[]>> callback) {
+        final List<String> snapshot = new ArrayList<>(keys);
+        final FutureTask<Map<String, byte[]>> task = new FutureTask<>(new Callable<Map<String, byte[]>>() {
+            @Override
+            public Map<String, byte[]> call() {
+                final Map<String, byte[]> result = new LinkedHashMap<>(snapshot.size());
+                for (String key : snapshot) {
+                    awaitPendingWrite(key);
+                    final byte[] bytes = getBytes(key);
+                    if (bytes != null) result.put(key, bytes);
                 }
+                deliver(callback, result);
+                return result;
             }
-            if (oldestFile == null) return 0;
-            long fileSize = oldestFile.length();
-            if (oldestFile.delete()) {
-                lastUsageDates.remove(oldestFile);
-                return fileSize;
-            }
-            return 0;
-        }
+        });
+        getIoExecutor().execute(task);
+        return task;
     }
 
-    private static class CacheHelper {
+    /**
+     * 异步操作的回调
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * 排队中的写入，开始执行前同一个键的新写入直接替换其值
+     */
+    private final class PendingWrite implements Callable<Boolean> {
+        private final String              key;
+        private final FutureTask<Boolean> future;
+        private final List<Callback<Boolean>> callbacks = new ArrayList<>(1);
+        private Object  value;
+        private int     saveTime;
+        private boolean started;
+
+        private PendingWrite(final String key, final Object value, final int saveTime, final Callback<Boolean> callback) {
+            this.key = key;
+            this.value = value;
+            this.saveTime = saveTime;
+            if (callback != null) callbacks.add(callback);
+            this.future = new FutureTask<>(this);
+        }
+
+        /**
+         * @return {@code false}: 已经开始写入，需重新排队
+         */
+        private synchronized boolean merge(final Object value, final int saveTime, final Callback<Boolean> callback) {
+            if (started) return false;
+            this.value = value;
+            this.saveTime = saveTime;
+            if (callback != null) callbacks.add(callback);
+            return true;
+        }
+
+        @Override
+        public Boolean call() {
+            final Object value;
+            final int saveTime;
+            final List<Callback<Boolean>> callbacks;
+            synchronized (this) {
+                started = true;
+                value = this.value;
+                saveTime = this.saveTime;
+                callbacks = new ArrayList<>(this.callbacks);
+            }
+            mPendingWrites.remove(key, this);
+            final boolean success = putValue(key, value, saveTime);
+            for (Callback<Boolean> callback : callbacks) {
+                deliver(callback, success);
+            }
+            return success;
+        }
+    }
+
+    /**
+     * 如果键有排队中的写入，在当前线程立即执行或等待其完成
+     */
+    private void awaitPendingWrite(final String key) {
+        final PendingWrite pending = mPendingWrites.get(key);
+        if (pending == null) return;
+        pending.future.run();
+        try {
+            pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean putValue(final String key, final Object value, final int saveTime) {
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            return putInternal(key, CacheHelper.TYPE_BYTES, bytes, bytes, saveTime);
+        }
+        if (value instanceof String) {
+            return putInternal(key, CacheHelper.TYPE_STRING, CacheHelper.string2Bytes((String) value), value, saveTime);
+        }
+        if (value instanceof JSONObject) {
+            final byte[] bytes = CacheHelper.jsonObject2Bytes((JSONObject) value);
+            return putInternal(key, CacheHelper.TYPE_JSON_OBJECT, bytes, bytes, saveTime);
+        }
+        if (value instanceof JSONArray) {
+            final byte[] bytes = CacheHelper.jsonArray2Bytes((JSONArray) value);
+            return putInternal(key, CacheHelper.TYPE_JSON_ARRAY, bytes, bytes, saveTime);
+        }
+        if (value instanceof Bitmap) {
+            return putInternal(key, CacheHelper.TYPE_BITMAP, encodeBitmap((Bitmap) value), value, saveTime);
+        }
+        if (value instanceof Drawable) {
+            final Bitmap bitmap = CacheHelper.drawable2Bitmap((Drawable) value);
+            return putInternal(key, CacheHelper.TYPE_BITMAP, encodeBitmap(bitmap), bitmap, saveTime);
+        }
+        if (value instanceof Parcelable) {
+            final byte[] bytes = CacheHelper.parcelable2Bytes((Parcelable) value);
+            return putInternal(key, CacheHelper.TYPE_PARCELABLE, bytes, bytes, saveTime);
+        }
+        final byte[] bytes = CacheHelper.serializable2Bytes((Serializable) value);
+        return putInternal(key, CacheHelper.TYPE_SERIALIZABLE, bytes, bytes, saveTime);
+    }
+
+    private static void checkValueType(final Object value) {
+        if (value instanceof byte[] || value instanceof String || value instanceof JSONObject
+                || value instanceof JSONArray || value instanceof Bitmap || value instanceof Drawable
+                || value instanceof Parcelable || value instanceof Serializable) {
+            return;
+        }
+        throw new IllegalArgumentException("unsupported value type: " + (value == null ? null : value.getClass()));
+    }
+
+    private static <T> void deliver(final Callback<T> callback, final T result) {
+        if (callback == null) return;
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResult(result);
+            }
+        });
+    }
+
+    private static Handler getMainHandler() {
+        if (sMainHandler == null) {
+            synchronized (Cache01Utils.class) {
+                if (sMainHandler == null) sMainHandler = new Handler(Looper.getMainLooper());
+            }
+        }
+        return sMainHandler;
+    }
+
+    /**
+     * 所有实例共用的 IO 线程池，队列有界，排满时由提交线程自己执行，避免无限堆积
+     */
+    private static ExecutorService getIoExecutor() {
+        if (sIoExecutor == null) {
+            synchronized (Cache01Utils.class) {
+                if (sIoExecutor == null) {
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+                            30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(IO_QUEUE_CAPACITY),
+                            new ThreadFactory() {
+                                private final AtomicInteger mCount = new AtomicInteger();
+
+                                @Override
+                                public Thread newThread(@NonNull final Runnable r) {
+                                    final Thread thread = new Thread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                            r.run();
+                                        }
+                                    }, "Cache01Utils-io-" + mCount.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            }, new ThreadPoolExecutor.CallerRunsPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    sIoExecutor = executor;
+                }
+            }
+        }
+        return sIoExecutor;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 预读
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 把一批键预读到内存层，之后的读取直接命中内存
+     * <p>按条目在磁盘上的位置排序后切成几段，在 IO 线程池上并行读取，每段内顺序读，段存储下接近顺序 IO</p>
+     * <p>未开启内存层时不做任何事；已在内存层、不存在或已过期的键跳过</p>
+     *
+     * @param keys 键
+     * @return 实际读入内存层的条目数
+     */
+    public Future<Integer> prefetch(@NonNull final Collection<String> keys) {
+        final AtomicInteger loaded = new AtomicInteger();
+        final FutureTask<Integer> result = new FutureTask<>(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return loaded.get();
+            }
+        });
+        final MemoryCache memoryCache = mMemoryCache;
+        final List<PrefetchItem> items = new ArrayList<>(keys.size());
+        if (memoryCache != null) {
+            for (String key : keys) {
+                if (key == null || memoryCache.contains(key) || mPendingWrites.containsKey(key)) continue;
+                final long location = mCacheManager.locationOf(key);
+                if (location >= 0) items.add(new PrefetchItem(key, location));
+            }
+        }
+        if (items.isEmpty()) {
+            result.run();
+            return result;
+        }
+        Collections.sort(items);
+        final int parts = Math.min(IO_THREADS, items.size());
+        final AtomicInteger remaining = new AtomicInteger(parts);
+        for (int i = 0; i < parts; i++) {
+            final List<PrefetchItem> part = items.subList(items.size() * i / parts, items.size() * (i + 1) / parts);
+            getIoExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (PrefetchItem item : part) {
+                            if (prefetchOne(memoryCache, item.key)) loaded.incrementAndGet();
+                        }
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) result.run();
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 启动时调用，预读上次 {@link #recordStartupProfile(long)} 记录的键
+     *
+     * @return 实际读入内存层的条目数
+     */
+    public Future<Integer> prefetchStartupProfile() {
+        final List<String> keys = get(STARTUP_PROFILE_KEY, CacheCodecs.list(CacheCodecs.STRING));
+        return prefetch(keys == null ? Collections.<String>emptyList() : keys);
+    }
+
+    /**
+     * 记录从现在起 durationMillis 内读取过的键，到时保存为启动访问集，下次启动由 {@link #prefetchStartupProfile()} 预读
+     * <p>启动访问集本身作为一个条目保存在缓存中，同样受容量限制，被淘汰或清除后下次启动不再预读</p>
+     *
+     * @param durationMillis 记录时长，单位：毫秒
+     */
+    public void recordStartupProfile(final long durationMillis) {
+        final AccessRecorder recorder = new AccessRecorder();
+        mAccessRecorder = recorder;
+        getSweepExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (mAccessRecorder != recorder) return;
+                mAccessRecorder = null;
+                put(STARTUP_PROFILE_KEY, recorder.keys(), CacheCodecs.list(CacheCodecs.STRING));
+            }
+        }, durationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在键锁内读盘并放入内存层，与 {@link #putInternal} 对内存层的更新串行，不会用旧值覆盖新写入的值
+     */
+    private boolean prefetchOne(final MemoryCache memoryCache, final String key) {
+        final Lock lock = mCacheManager.lockFor(key);
+        lock.lock();
+        try {
+            if (memoryCache != mMemoryCache || memoryCache.contains(key)) return false;
+            final byte[] data = getBytesFromDisk(key);
+            if (data == null) return false;
+            memoryCache.put(key, data, mCacheManager.getExpireMillis(key));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次读取，计入启动访问集与准入频率
+     */
+    private void recordAccess(final String key) {
+        final AccessRecorder recorder = mAccessRecorder;
+        if (recorder != null && !STARTUP_PROFILE_KEY.equals(key)) recorder.add(key);
+        final CacheAdmission admission = mCacheManager.admission;
+        if (admission != null) admission.increment(key);
+    }
+
+    private static final class PrefetchItem implements Comparable<PrefetchItem> {
+        private final String key;
+        private final long   location;
+
+        private PrefetchItem(final String key, final long location) {
+            this.key = key;
+            this.location = location;
+        }
+
+        @Override
+        public int compareTo(@NonNull final PrefetchItem other) {
+            return location < other.location ? -1 : (location == other.location ? 0 : 1);
+        }
+    }
+
+    /**
+     * 按首次访问顺序记录键，超过上限后不再记录
+     */
+    private static final class AccessRecorder {
+        private final LinkedHashSet<String> keys = new LinkedHashSet<>();
+
+        private synchronized void add(final String key) {
+            if (keys.size() < MAX_PROFILE_KEYS) keys.add(key);
+        }
+
+        private synchronized List<String> keys() {
+            return new ArrayList<>(keys);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 统计
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 获取统计快照
+     * <p>包含命中、未命中、过期、淘汰次数，读写字节数以及读写耗时分布，可据此调整 maxSize、maxCount</p>
+     *
+     * @return {@link CacheStats}
+     */
+    public CacheStats getStats() {
+        return mStats.snapshot(mCacheManager.getEvictionCount(), mCacheManager.getEvictedBytes(),
+                getCacheSize(), getCachePhysicalSize(), getCacheCount());
+    }
+
+    /**
+     * 周期性地回调统计快照，在清理线程上回调
+     *
+     * @param periodSeconds 回调间隔，单位：秒
+     * @param listener      回调，为{@code null}时停止
+     */
+    public synchronized void setOnStatsListener(final long periodSeconds, final OnStatsListener listener) {
+        if (mStatsFuture != null) {
+            mStatsFuture.cancel(false);
+            mStatsFuture = null;
+        }
+        if (listener == null) return;
+        mStatsFuture = getSweepExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                listener.onStats(getStats());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 统计回调
+     */
+    public interface OnStatsListener {
+        void onStats(CacheStats stats);
+    }
+
+    /**
+     * 统计快照
+     */
+    public static final class CacheStats {
+        private final long            memoryHitCount;
+        private final long            diskHitCount;
+        private final long            missCount;
+        private final long            expiredCount;
+        private final long            evictionCount;
+        private final long            evictedBytes;
+        private final long            bytesRead;
+        private final long            bytesWritten;
+        private final long            compressedCount;
+        private final long            uncompressedBytes;
+        private final long            compressedBytes;
+        private final long            admissionRejectedCount;
+        private final long            cacheSize;
+        private final long            physicalSize;
+        private final int             cacheCount;
+        private final LatencySnapshot loadLatency;
+        private final LatencySnapshot putLatency;
+
+        private CacheStats(final StatsCounter counter, final long evictionCount, final long evictedBytes,
+                           final long cacheSize, final long physicalSize, final int cacheCount) {
+            this.memoryHitCount = counter.memoryHitCount.get();
+            this.diskHitCount = counter.diskHitCount.get();
+            this.missCount = counter.missCount.get();
+            this.expiredCount = counter.expiredCount.get();
+            this.bytesRead = counter.bytesRead.get();
+            this.bytesWritten = counter.bytesWritten.get();
+            this.compressedCount = counter.compressedCount.get();
+            this.uncompressedBytes = counter.uncompressedBytes.get();
+            this.compressedBytes = counter.compressedBytes.get();
+            this.admissionRejectedCount = counter.admissionRejectedCount.get();
+            this.loadLatency = counter.loadLatency.snapshot();
+            this.putLatency = counter.putLatency.snapshot();
+            this.evictionCount = evictionCount;
+            this.evictedBytes = evictedBytes;
+            this.cacheSize = cacheSize;
+            this.physicalSize = physicalSize;
+            this.cacheCount = cacheCount;
+        }
+
+        public long getHitCount() {
+            return memoryHitCount + diskHitCount;
+        }
+
+        public long getMemoryHitCount() {
+            return memoryHitCount;
+        }
+
+        public long getDiskHitCount() {
+            return diskHitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return 命中率，没有请求时为 1
+         */
+        public double getHitRate() {
+            final long requestCount = getHitCount() + missCount;
+            return requestCount == 0 ? 1.0 : (double) getHitCount() / requestCount;
+        }
+
+        public long getExpiredCount() {
+            return expiredCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return 压缩写入的条目数
+         */
+        public long getCompressedCount() {
+            return compressedCount;
+        }
+
+        /**
+         * @return 压缩写入的条目压缩前的总字节数
+         */
+        public long getUncompressedBytes() {
+            return uncompressedBytes;
+        }
+
+        /**
+         * @return 压缩写入的条目压缩后的总字节数
+         */
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        /**
+         * @return 压缩比，压缩前字节数除以压缩后字节数，没有压缩过时为 1
+         */
+        public double getCompressionRatio() {
+            return compressedBytes == 0 ? 1.0 : (double) uncompressedBytes / compressedBytes;
+        }
+
+        /**
+         * @return 开启准入后，新键因频率不够被丢弃的次数
+         */
+        public long getAdmissionRejectedCount() {
+            return admissionRejectedCount;
+        }
+
+        /**
+         * @return 条目数据长度之和
+         */
+        public long getCacheSize() {
+            return cacheSize;
+        }
+
+        /**
+         * @return 实际占用的磁盘空间，见 {@link Cache01Utils#getCachePhysicalSize()}
+         */
+        public long getPhysicalSize() {
+            return physicalSize;
+        }
+
+        public int getCacheCount() {
+            return cacheCount;
+        }
+
+        /**
+         * @return 从磁盘读取的耗时分布
+         */
+        public LatencySnapshot getLoadLatency() {
+            return loadLatency;
+        }
+
+        /**
+         * @return 写入磁盘的耗时分布
+         */
+        public LatencySnapshot getPutLatency() {
+            return putLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{" +
+                    "hitRate=" + getHitRate() +
+                    ", memoryHit=" + memoryHitCount +
+                    ", diskHit=" + diskHitCount +
+                    ", miss=" + missCount +
+                    ", expired=" + expiredCount +
+                    ", eviction=" + evictionCount +
+                    ", evictedBytes=" + evictedBytes +
+                    ", bytesRead=" + bytesRead +
+                    ", bytesWritten=" + bytesWritten +
+                    ", compressionRatio=" + getCompressionRatio() +
+                    ", size=" + cacheSize +
+                    ", count=" + cacheCount +
+                    ", load=" + loadLatency +
+                    ", put=" + putLatency +
+                    '}';
+        }
+    }
+
+    /**
+     * 耗时分布快照
+     * <p>第 i 个桶统计耗时在 [2^i, 2^(i+1)) 微秒内的次数，第 0 个桶包含 1 微秒以下，最后一个桶包含更长的耗时</p>
+     */
+    public static final class LatencySnapshot {
+        private final long[] buckets;
+        private final long   count;
+        private final long   totalNanos;
+
+        private LatencySnapshot(final long[] buckets, final long count, final long totalNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.totalNanos = totalNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return 平均耗时，单位：毫秒
+         */
+        public double getAverageMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * 估算分位耗时，取所在桶的上界
+         *
+         * @param percentile 分位，0 到 1
+         * @return 耗时，单位：毫秒
+         */
+        public double getPercentileMillis(final double percentile) {
+            if (count == 0) return 0;
+            final long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) return (1L << (i + 1)) / 1000.0;
+            }
+            return (1L << buckets.length) / 1000.0;
+        }
+
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count +
+                    ", avg=" + getAverageMillis() + "ms" +
+                    ", p50=" + getPercentileMillis(0.5) + "ms" +
+                    ", p99=" + getPercentileMillis(0.99) + "ms}";
+        }
+    }
+
+    private static final class StatsCounter {
+        private final AtomicLong       memoryHitCount         = new AtomicLong();
+        private final AtomicLong       diskHitCount           = new AtomicLong();
+        private final AtomicLong       missCount              = new AtomicLong();
+        private final AtomicLong       expiredCount           = new AtomicLong();
+        private final AtomicLong       bytesRead              = new AtomicLong();
+        private final AtomicLong       bytesWritten           = new AtomicLong();
+        private final AtomicLong       compressedCount        = new AtomicLong();
+        private final AtomicLong       uncompressedBytes      = new AtomicLong();
+        private final AtomicLong       compressedBytes        = new AtomicLong();
+        private final AtomicLong       admissionRejectedCount = new AtomicLong();
+        private final LatencyHistogram loadLatency            = new LatencyHistogram();
+        private final LatencyHistogram putLatency             = new LatencyHistogram();
+
+        private CacheStats snapshot(final long evictionCount, final long evictedBytes,
+                                    final long cacheSize, final long physicalSize, final int cacheCount) {
+            return new CacheStats(this, evictionCount, evictedBytes, cacheSize, physicalSize, cacheCount);
+        }
+
+        private void recordCompression(final long rawLength, final long storedLength) {
+            compressedCount.incrementAndGet();
+            uncompressedBytes.addAndGet(rawLength);
+            compressedBytes.addAndGet(storedLength);
+        }
+    }
+
+    /**
+     * 按 2 的幂次分桶的耗时直方图，记录时只做一次原子自增
+     */
+    private static final class LatencyHistogram {
+        private static final int BUCKET_COUNT = 24;
+
+        private final AtomicLongArray buckets    = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong      count      = new AtomicLong();
+        private final AtomicLong      totalNanos = new AtomicLong();
+
+        private void record(final long nanos) {
+            final long micros = nanos / 1000;
+            final int bucket = micros <= 0 ? 0 : Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+        }
+
+        private LatencySnapshot snapshot() {
+            final long[] copy = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                copy[i] = buckets.get(i);
+            }
+            return new LatencySnapshot(copy, count.get(), totalNanos.get());
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 过期清理
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 清理所有已过期的缓存
+     * <p>过期条目默认只在读取到时删除，其余时间仍计入缓存尺寸，可能把未过期的条目挤出</p>
+     * <p>按过期时间点从早到晚分批删除，需异步调用</p>
+     *
+     * @return 释放的字节数
+     */
+    public long evictExpired() {
+        return evictExpired(null);
+    }
+
+    /**
+     * 开启周期性的过期清理，在所有实例共用的低优先级线程上执行
+     *
+     * @param periodSeconds 清理间隔，单位：秒
+     * @param listener      清理到过期条目时的回调，在清理线程上回调，可为{@code null}
+     */
+    public synchronized void startExpirySweeper(final long periodSeconds, final OnExpirySweptListener listener) {
+        stopExpirySweeper();
+        mSweepFuture = getSweepExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                final int[] count = new int[1];
+                final long freed = evictExpired(count);
+                if (listener != null && count[0] > 0) listener.onSwept(count[0], freed);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止周期性的过期清理
+     */
+    public synchronized void stopExpirySweeper() {
+        if (mSweepFuture == null) return;
+        mSweepFuture.cancel(false);
+        mSweepFuture = null;
+    }
+
+    /**
+     * 过期清理回调
+     */
+    public interface OnExpirySweptListener {
+        /**
+         * @param count 删除的条目数
+         * @param bytes 释放的字节数
+         */
+        void onSwept(int count, long bytes);
+    }
+
+    private long evictExpired(final int[] outCount) {
+        final List<String> removedKeys = new ArrayList<>();
+        long freed = 0;
+        int removed;
+        do {
+            final int before = removedKeys.size();
+            freed += mCacheManager.removeExpired(SWEEP_BATCH, removedKeys);
+            removed = removedKeys.size() - before;
+        } while (removed == SWEEP_BATCH);
+        final MemoryCache memoryCache = mMemoryCache;
+        for (String key : removedKeys) {
+            if (memoryCache != null) memoryCache.remove(key);
+            invalidateBitmap(key);
+        }
+        mStats.expiredCount.addAndGet(removedKeys.size());
+        if (outCount != null) outCount[0] = removedKeys.size();
+        return freed;
+    }
+
+    private static ScheduledExecutorService getSweepExecutor() {
+        if (sSweepExecutor == null) {
+            synchronized (Cache01Utils.class) {
+                if (sSweepExecutor == null) {
+                    sSweepExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull final Runnable r) {
+                            final Thread thread = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                                    r.run();
+                                }
+                            }, "Cache01Utils-sweeper");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return sSweepExecutor;
+    }
+
+    /**
+     * 写入磁盘，并按内存层策略写入或失效内存中的值
+     *
+     * @param key         键
+     * @param type        值类型，见 {@link CacheHelper#TYPE_BYTES} 等
+     * @param payload     写入磁盘的数据
+     * @param memoryValue 放入内存层的值，为 byte[] 时不可再被修改
+     * @param saveTime    保存时长，单位：秒
+     * @return {@code true}: 写入成功<br>{@code false}: 写入失败或未通过准入
+     */
+    private boolean putInternal(final String key, final byte type, final byte[] payload, final Object memoryValue, final int saveTime) {
+        if (payload == null || payload.length <= 0) return false;
+        final long start = System.nanoTime();
+        final long expireMillis = saveTime >= 0 ? System.currentTimeMillis() + saveTime * 1000L : -1;
+        byte[] stored = payload;
+        short flags = 0;
+        final int threshold = mCompressThreshold;
+        if (threshold > 0 && payload.length >= threshold) {
+            final byte[] deflated = CacheHelper.deflate(payload);
+            if (deflated != null) {
+                stored = deflated;
+                flags = CacheHelper.FLAG_DEFLATE;
+            }
+        }
+        final Lock lock = mCacheManager.lockFor(key);
+        lock.lock();
+        try {
+            final boolean success = mCacheManager.writeAtomically(key, type, flags, expireMillis, stored);
+            if (success) {
+                // 写入失败或未通过准入的数据不算进压缩率
+                if (flags == CacheHelper.FLAG_DEFLATE) mStats.recordCompression(payload.length, stored.length);
+                mStats.bytesWritten.addAndGet(stored.length);
+                mStats.putLatency.record(System.nanoTime() - start);
+            }
+            invalidateBitmap(key);
+            final MemoryCache memoryCache = mMemoryCache;
+            if (memoryCache == null) return success;
+            // 未通过准入时磁盘上没有这个值，内存层也不能留，否则与磁盘不一致
+            if (success && memoryCache.writeThrough && memoryValue != null) {
+                memoryCache.put(key, memoryValue, expireMillis);
+            } else {
+                memoryCache.remove(key);
+            }
+            return success;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取去掉过期信息后的数据，优先取内存层，从磁盘读到时按策略提升到内存
+     * <p>返回的数组可能被内存层持有，只可读不可改</p>
+     */
+    private byte[] getPayload(final String key) {
+        final Object cached = getFromMemory(key, byte[].class, String.class);
+        if (cached instanceof byte[]) return (byte[]) cached;
+        if (cached instanceof String) return CacheHelper.string2Bytes((String) cached);
+        final byte[] data = getBytesFromDisk(key);
+        if (data != null) promoteToMemory(key, data);
+        return data;
+    }
+
+    private byte[] getBytesFromDisk(final String key) {
+        final long start = System.nanoTime();
+        final CacheHelper.Record record = mCacheManager.readRecord(key);
+        if (record == null) {
+            mStats.missCount.incrementAndGet();
+            return null;
+        }
+        if (record.corrupt || record.isDue()) {
+            if (!record.corrupt) mStats.expiredCount.incrementAndGet();
+            mStats.missCount.incrementAndGet();
+            mCacheManager.removeByKey(key);
+            return null;
+        }
+        mStats.diskHitCount.incrementAndGet();
+        mStats.bytesRead.addAndGet(record.payload.length);
+        mStats.loadLatency.record(System.nanoTime() - start);
+        return record.payload;
+    }
+
+    /**
+     * 从内存层取调用方能直接用的值，取到才记一次内存命中；类型不符时返回{@code null}，由调用方读磁盘并记磁盘命中
+     *
+     * @param types 调用方能用的类型
+     */
+    private Object getFromMemory(final String key, final Class<?>... types) {
+        recordAccess(key);
+        final MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache == null) return null;
+        final Object value = memoryCache.get(key, mStats);
+        if (value == null || value instanceof Bitmap && ((Bitmap) value).isRecycled()) return null;
+        for (Class<?> type : types) {
+            if (type.isInstance(value)) {
+                mStats.memoryHitCount.incrementAndGet();
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private void promoteToMemory(final String key, final Object value) {
+        final MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache == null || !memoryCache.promoteOnRead) return;
+        memoryCache.put(key, value, mCacheManager.getExpireMillis(key));
+    }
+
+    private class CacheManager {
+        private final long              sizeLimit;
+        private final int               countLimit;
+        /**
+         * {@link #STORE_FILE} 与 {@link #STORE_FILE_MULTI_PROCESS} 时使用
+         */
+        private final CacheJournal      journal;
+        /**
+         * {@link #STORE_SEGMENT} 时使用
+         */
+        private final CacheSegmentStore segments;
+        private final AtomicBoolean     compactionScheduled = new AtomicBoolean();
+        private final long              blockSize;
+        private volatile CacheAdmission admission;
+
+        private CacheManager(final File cacheDir, final long sizeLimit, final int countLimit, final int store) {
+            this.sizeLimit = sizeLimit;
+            this.countLimit = countLimit;
+            this.blockSize = CacheHelper.blockSizeOf(cacheDir);
+            if (store == STORE_SEGMENT) {
+                journal = null;
+                segments = new CacheSegmentStore(new File(cacheDir, CacheSegmentStore.SEGMENT_DIR));
+            } else {
+                journal = new CacheJournal(cacheDir, store == STORE_FILE_MULTI_PROCESS);
+                journal.setBlockSize(blockSize);
+                segments = null;
+            }
+        }
+
+        private long getCacheSize() {
+            return segments != null ? segments.size() : journal.size();
+        }
+
+        private long getPhysicalSize() {
+            return segments != null ? segments.physicalSize(blockSize) : journal.physicalSize();
+        }
+
+        private int getCacheCount() {
+            return segments != null ? segments.count() : journal.count();
+        }
+
+        /**
+         * 获取键对应的文件，并记为最近使用
+         *
+         * @return 不存在或已过期时返回{@code null}
+         */
+        private File getFileIfExists(final String key) {
+            CacheJournal.Entry entry = journal.get(key);
+            // 旧版本留下的文件，收进日志后由 readRecord 改写为新格式
+            if (entry == null) entry = journal.adoptLegacy(key);
+            if (entry == null) return null;
+            if (entry.isExpired()) {
+                mStats.expiredCount.incrementAndGet();
+                journal.remove(key);
+                return null;
+            }
+            final File file = journal.getFile(entry);
+            if (!file.exists()) {
+                journal.remove(key);
+                return null;
+            }
+            return file;
+        }
+
+        /**
+         * 获取段存储中键对应的条目，并记为最近使用
+         *
+         * @return 不存在或已过期时返回{@code null}
+         */
+        private CacheSegmentStore.Entry getSegmentEntryIfExists(final String key) {
+            final CacheSegmentStore.Entry entry = segments.get(key);
+            if (entry == null) return null;
+            if (entry.isExpired()) {
+                mStats.expiredCount.incrementAndGet();
+                segments.remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * 读取整个条目，旧格式的条目读到后改写为二进制头，下次读取不再走兼容解析
+         *
+         * @return 不存在或读取失败时返回{@code null}
+         */
+        private CacheHelper.Record readRecord(final String key) {
+            if (segments != null) {
+                final CacheSegmentStore.Entry entry = getSegmentEntryIfExists(key);
+                return entry == null ? null : CacheHelper.readRecord(segments.read(entry));
+            }
+            final File file = getFileIfExists(key);
+            if (file == null) return null;
+            final CacheHelper.Record record = CacheHelper.readRecord(file);
+            if (record != null && record.legacy && !record.corrupt && !record.isDue()) migrate(key, record);
+            return record;
+        }
+
+        /**
+         * 打开条目数据的输入流
+         *
+         * @return 不存在或无法读取时返回{@code null}
+         */
+        private CacheHelper.PayloadInputStream openPayload(final String key) throws IOException {
+            if (segments != null) {
+                final CacheSegmentStore.Entry entry = getSegmentEntryIfExists(key);
+                if (entry == null) return null;
+                final ByteBuffer data = segments.read(entry);
+                final CacheHelper.PayloadInputStream in =
+                        CacheHelper.openPayload(new CacheHelper.ByteBufferInputStream(data), data.remaining());
+                if (in == null) removeByKey(key);
+                return in;
+            }
+            final File file = getFileIfExists(key);
+            if (file == null) return null;
+            final CacheHelper.PayloadInputStream in = CacheHelper.openPayload(file);
+            if (in != null) return in;
+            final CacheHelper.Record record = CacheHelper.readRecord(file);
+            if (record != null && record.corrupt) removeByKey(key);
+            if (record == null || !record.legacy || record.corrupt || record.isDue()) return null;
+            return migrate(key, record) ? CacheHelper.openPayload(file) : null;
+        }
+
+        private boolean migrate(final String key, final CacheHelper.Record record) {
+            final Lock lock = lockFor(key);
+            lock.lock();
+            try {
+                return writeAtomically(key, record.type, (short) 0, record.expireMillis, record.payload);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Lock lockFor(final String key) {
+            return segments != null ? segments.lockFor(key) : journal.lockFor(key);
+        }
+
+        /**
+         * 获取流式写入用的临时文件
+         */
+        private File newTempFile(final String key) {
+            return segments != null ? segments.newTempFile() : journal.newTempFile(journal.newFile(key));
+        }
+
+        /**
+         * 提交写完的临时文件，需持有 {@link #lockFor(String)}
+         *
+         * @return {@code true}: 提交成功<br>{@code false}: 未通过准入，已删除
+         */
+        private boolean commitTempFile(final String key, final File tmpFile, final long expireMillis) throws IOException {
+            final boolean existed = contains(key);
+            if (segments != null) {
+                if (!segments.put(key, tmpFile, expireMillis)) throw new IOException("can't append " + key + " to segment");
+                final boolean admitted = admit(key, existed);
+                afterSegmentPut();
+                return admitted;
+            }
+            final File file = journal.newFile(key);
+            if (journal.commit(key, tmpFile, file, expireMillis) == null) {
+                throw new IOException("can't rename " + tmpFile + " to " + file);
+            }
+            final boolean admitted = admit(key, existed);
+            journal.trimToSize(sizeLimit, countLimit);
+            return admitted;
+        }
+
+        /**
+         * 先写临时文件再改名提交，需持有 {@link #lockFor(String)}
+         * <p>段存储直接追加到当前段，记录头的魔数最后写入，同样不会读到写了一半的条目</p>
+         *
+         * @return {@code true}: 提交成功<br>{@code false}: 写入失败，原有条目保持不变；或新键未通过准入，已删除
+         */
+        private boolean writeAtomically(final String key, final byte type, final short flags,
+                                        final long expireMillis, final byte[] payload) {
+            final boolean existed = contains(key);
+            if (segments != null) {
+                final ByteBuffer[] data = {CacheHelper.newHeader(type, flags, expireMillis, payload), ByteBuffer.wrap(payload)};
+                if (!segments.put(key, data, expireMillis)) return false;
+                final boolean admitted = admit(key, existed);
+                afterSegmentPut();
+                return admitted;
+            }
+            final File file = journal.newFile(key);
+            final File tmpFile = journal.newTempFile(file);
+            if (!CacheHelper.writeRecord(tmpFile, type, flags, expireMillis, payload)
+                    || journal.commit(key, tmpFile, file, expireMillis) == null) {
+                tmpFile.delete();
+                return false;
+            }
+            final boolean admitted = admit(key, existed);
+            journal.trimToSize(sizeLimit, countLimit);
+            return admitted;
+        }
+
+        private boolean contains(final String key) {
+            return segments != null ? segments.peek(key) != null : journal.peek(key) != null;
+        }
+
+        /**
+         * 提交后、淘汰前的准入检查，只对新键做，需持有 {@link #lockFor(String)}
+         *
+         * @return {@code true}: 保留<br>{@code false}: 未通过准入，已删除
+         */
+        private boolean admit(final String key, final boolean existed) {
+            final CacheAdmission admission = this.admission;
+            if (admission == null) return true;
+            admission.increment(key);
+            if (existed) return true;
+            final boolean admitted = segments != null
+                    ? segments.admit(key, sizeLimit, countLimit, admission)
+                    : journal.admit(key, sizeLimit, countLimit, admission);
+            if (!admitted) mStats.admissionRejectedCount.incrementAndGet();
+            return admitted;
+        }
+
+        /**
+         * 段存储写入后淘汰超出限制的条目，失效数据较多时在后台压缩
+         */
+        private void afterSegmentPut() {
+            segments.trimToSize(sizeLimit, countLimit);
+            if (!segments.needsCompaction() || !compactionScheduled.compareAndSet(false, true)) return;
+            getSweepExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (segments.compact()) ;
+                    } finally {
+                        compactionScheduled.set(false);
+                    }
+                }
+            });
+        }
+
+        private boolean removeByKey(final String key) {
+            return segments != null ? segments.remove(key) : journal.remove(key);
+        }
+
+        private void beginBatch() {
+            if (journal != null) journal.beginBatch();
+        }
+
+        private void endBatch() {
+            if (journal != null) {
+                journal.endBatch();
+            } else {
+                segments.flush();
+            }
+        }
+
+        private long removeExpired(final int maxCount, final List<String> removedKeys) {
+            if (segments != null) return segments.removeExpired(System.currentTimeMillis(), maxCount, removedKeys);
+            return journal.removeExpired(System.currentTimeMillis(), maxCount, removedKeys);
+        }
+
+        private long getEvictionCount() {
+            return segments != null ? segments.evictionCount() : journal.evictionCount();
+        }
+
+        private long getEvictedBytes() {
+            return segments != null ? segments.evictedBytes() : journal.evictedBytes();
+        }
+
+        /**
+         * 条目在磁盘上的大致位置，预读时按它排序：段存储为段号与段内偏移，逐文件存储在 Lollipop 及以上取 inode 号，
+         * 同一目录下 inode 号相近的文件通常也分配在相近的位置
+         *
+         * @return 不存在返回 -1
+         */
+        private long locationOf(final String key) {
+            if (segments != null) {
+                final CacheSegmentStore.Entry entry = segments.peek(key);
+                return entry == null ? -1 : entry.location();
+            }
+            final CacheJournal.Entry entry = journal.peek(key);
+            if (entry == null) return -1;
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return 0;
+            try {
+                return Os.stat(journal.getFile(entry).getPath()).st_ino;
+            } catch (ErrnoException e) {
+                return -1;
+            }
+        }
+
+        private long getExpireMillis(final String key) {
+            if (segments != null) {
+                final CacheSegmentStore.Entry entry = segments.peek(key);
+                return entry == null ? -1 : entry.expireMillis;
+            }
+            final CacheJournal.Entry entry = journal.peek(key);
+            return entry == null ? -1 : entry.expireMillis;
+        }
+
+        private boolean clear() {
+            return segments != null ? segments.clear() : journal.clear();
+        }
+
+        private void close() {
+            if (segments != null) {
+                segments.close();
+            } else {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * 流式写入，先写临时文件，关闭时补写条目头并改名提交
+     * <p>开启压缩时先缓存阈值以内的数据，达到阈值后改为边写边压缩，不足阈值的条目按原样保存</p>
+     */
+    private final class EntryOutputStream extends OutputStream {
+        private final String           key;
+        private final byte             type;
+        private final File             tmpFile;
+        private final long             expireMillis;
+        private final FileOutputStream fos;
+        private final OutputStream     out;
+        private final CRC32            crc32 = new CRC32();
+        private final int              compressThreshold;
+        private ByteArrayOutputStream  pending;
+        private Deflater               deflater;
+        private DeflaterOutputStream   deflaterOut;
+        private long    length;
+        private long    storedLength;
+        private boolean failed;
+        private boolean closed;
+
+        /**
+         * 写入文件的数据，统计落盘字节数与 CRC32
+         */
+        private final OutputStream sink = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                out.write(b);
+                crc32.update(b);
+                storedLength++;
+            }
+
+            @Override
+            public void write(@NonNull final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+                crc32.update(b, off, len);
+                storedLength += len;
+            }
+        };
+
+        private EntryOutputStream(final String key, final byte type, final long expireMillis) throws IOException {
+            this.key = key;
+            this.type = type;
+            this.tmpFile = mCacheManager.newTempFile(key);
+            this.expireMillis = expireMillis;
+            this.compressThreshold = mCompressThreshold;
+            if (compressThreshold > 0) pending = new ByteArrayOutputStream(Math.min(compressThreshold, CacheHelper.STREAM_BUFFER_SIZE));
+            this.fos = new FileOutputStream(tmpFile);
+            this.out = new BufferedOutputStream(fos, CacheHelper.STREAM_BUFFER_SIZE);
+            try {
+                // 先占位，关闭时再写入真正的条目头
+                out.write(new byte[CacheHelper.HEADER_LEN]);
+            } catch (IOException e) {
+                CloseUtils.closeIOQuietly(out);
+                tmpFile.delete();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull final byte[] b, final int off, final int len) throws IOException {
+            ensureWritable(len);
+            try {
+                if (pending != null) {
+                    pending.write(b, off, len);
+                    if (pending.size() >= compressThreshold) startDeflate();
+                } else if (deflaterOut != null) {
+                    deflaterOut.write(b, off, len);
+                } else {
+                    sink.write(b, off, len);
+                }
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+            length += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            boolean committed = false;
+            try {
+                if (failed || length <= 0) return;
+                short flags = 0;
+                if (pending != null) {
+                    pending.writeTo(sink);
+                    pending = null;
+                } else if (deflaterOut != null) {
+                    deflaterOut.finish();
+                    flags = CacheHelper.FLAG_DEFLATE;
+                }
+                out.flush();
+                final FileChannel fc = fos.getChannel();
+                final ByteBuffer header = CacheHelper.newHeader(type, flags, expireMillis, (int) storedLength, (int) crc32.getValue());
+                while (header.hasRemaining()) {
+                    fc.write(header, header.position());
+                }
+                fc.force(true);
+                out.close();
+                final Lock lock = mCacheManager.lockFor(key);
+                lock.lock();
+                final boolean admitted;
+                try {
+                    admitted = mCacheManager.commitTempFile(key, tmpFile, expireMillis);
+                    if (admitted) {
+                        if (flags == CacheHelper.FLAG_DEFLATE) mStats.recordCompression(length, storedLength);
+                        mStats.bytesWritten.addAndGet(storedLength);
+                    }
+                    invalidateBitmap(key);
+                    final MemoryCache memoryCache = mMemoryCache;
+                    if (memoryCache != null) memoryCache.remove(key);
+                } finally {
+                    lock.unlock();
+                }
+                committed = true;
+                if (!admitted) throw new IOException(key + " rejected by admission");
+            } finally {
+                if (deflater != null) deflater.end();
+                if (!committed) {
+                    CloseUtils.closeIOQuietly(out);
+                    tmpFile.delete();
+                }
+            }
+        }
+
+        private void startDeflate() throws IOException {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            deflaterOut = new DeflaterOutputStream(sink, deflater, CacheHelper.STREAM_BUFFER_SIZE);
+            pending.writeTo(deflaterOut);
+            pending = null;
+        }
+
+        private void ensureWritable(final int len) throws IOException {
+            if (closed) throw new IOException("stream closed");
+            if (length + len > Math.min(Integer.MAX_VALUE, mCacheManager.sizeLimit)) {
+                failed = true;
+                throw new IOException("entry of " + key + " exceeds max size");
+            }
+        }
+    }
+
+    /**
+     * Bitmap 缓存模式的内存部分：按键缓存解码结果，并持有 inBitmap 复用池
+     * <p>每个键只缓存一份，记录其采样率，请求的尺寸不需要更清晰的版本时直接复用</p>
+     */
+    private static final class BitmapCache {
+        private final LruCache<String, BitmapEntry> memory;
+        private final CacheBitmapPool               pool;
+        private final Bitmap.CompressFormat         format;
+        private final int                           quality;
+
+        private BitmapCache(final int memoryBytes, final int poolBytes, final Bitmap.CompressFormat format, final int quality) {
+            this.memory = new LruCache<String, BitmapEntry>(Math.max(1, memoryBytes)) {
+                @Override
+                protected int sizeOf(@NonNull final String key, @NonNull final BitmapEntry value) {
+                    return CacheBitmapPool.sizeOf(value.bitmap);
+                }
+            };
+            this.pool = new CacheBitmapPool(Math.max(0, poolBytes));
+            this.format = format;
+            this.quality = quality;
+        }
+
+        private Bitmap get(final String key, final int reqWidth, final int reqHeight) {
+            final BitmapEntry entry = memory.get(key);
+            if (entry == null) return null;
+            if (entry.bitmap.isRecycled() || entry.isDue()) {
+                memory.remove(key);
+                return null;
+            }
+            return entry.covers(reqWidth, reqHeight) ? entry.bitmap : null;
+        }
 
-        static final int timeInfoLen = 14;
+        private void put(final String key, final Bitmap bitmap, final int reqWidth, final int reqHeight, final long expireMillis) {
+            final BitmapEntry old = memory.get(key);
+            // 已缓存更清晰的版本时保留旧的
+            if (old != null && !old.bitmap.isRecycled() && old.covers(bitmap.getWidth(), bitmap.getHeight())) return;
+            memory.put(key, new BitmapEntry(bitmap, reqWidth, reqHeight, expireMillis));
+        }
+    }
 
-        private static byte[] newByteArrayWithTime(final int second, final byte[] data) {
-            byte[] time = createDueTime(second).getBytes();
-            byte[] content = new byte[time.length + data.length];
-            System.arraycopy(time, 0, content, 0, time.length);
-            System.arraycopy(data, 0, content, time.length, data.length);
-            return content;
+    private static final class BitmapEntry {
+        private final Bitmap bitmap;
+        /**
+         * 解码时请求的尺寸，{@code <= 0} 表示原尺寸
+         */
+        private final int    reqWidth;
+        private final int    reqHeight;
+        private final long   expireMillis;
+
+        private BitmapEntry(final Bitmap bitmap, final int reqWidth, final int reqHeight, final long expireMillis) {
+            this.bitmap = bitmap;
+            this.reqWidth = reqWidth;
+            this.reqHeight = reqHeight;
+            this.expireMillis = expireMillis;
         }
 
         /**
-         * 创建过期时间
-         *
-         * @param second 秒
-         * @return _$millis$_
+         * 以不小于目标尺寸的方式采样，请求的尺寸不超过解码时请求的尺寸时结果相同或更清晰
          */
-        private static String createDueTime(final int second) {
-            return String.format(Locale.getDefault(), "_$%010d$_", System.currentTimeMillis() / 1000 + second);
+        private boolean covers(final int width, final int height) {
+            if (reqWidth <= 0 || reqHeight <= 0) return true;
+            if (width <= 0 || height <= 0) return false;
+            return width <= reqWidth && height <= reqHeight
+                    || width <= bitmap.getWidth() && height <= bitmap.getHeight();
         }
 
-        private static boolean isDue(final byte[] data) {
-            long millis = getDueTime(data);
-            return millis != -1 && System.currentTimeMillis() > millis;
+        private boolean isDue() {
+            return expireMillis != -1 && System.currentTimeMillis() > expireMillis;
         }
+    }
 
-        private static long getDueTime(final byte[] data) {
-            if (hasTimeInfo(data)) {
-                String millis = new String(copyOfRange(data, 2, 12));
-                try {
-                    return Long.parseLong(millis) * 1000;
-                } catch (NumberFormatException e) {
-                    return -1;
+    /**
+     * 内存层，按字节数做 LRU 淘汰
+     */
+    private static final class MemoryCache {
+        private final LruCache<String, MemoryEntry> lruCache;
+        private final boolean                       writeThrough;
+        private final boolean                       promoteOnRead;
+
+        private MemoryCache(final int maxBytes, final boolean writeThrough, final boolean promoteOnRead) {
+            this.writeThrough = writeThrough;
+            this.promoteOnRead = promoteOnRead;
+            lruCache = new LruCache<String, MemoryEntry>(maxBytes) {
+                @Override
+                protected int sizeOf(@NonNull String key, @NonNull MemoryEntry value) {
+                    return value.weight;
                 }
+            };
+        }
+
+        private Object get(final String key, final StatsCounter stats) {
+            final MemoryEntry entry = lruCache.get(key);
+            if (entry == null) return null;
+            if (entry.expireMillis != -1 && System.currentTimeMillis() > entry.expireMillis) {
+                lruCache.remove(key);
+                stats.expiredCount.incrementAndGet();
+                return null;
             }
-            return -1;
+            return entry.value;
         }
 
-        private static byte[] getDataWithoutDueTime(final byte[] data) {
-            if (hasTimeInfo(data)) {
-                return copyOfRange(data, timeInfoLen, data.length);
+        private void put(final String key, final Object value, final long expireMillis) {
+            final int weight = weigh(value);
+            if (weight > lruCache.maxSize()) {
+                // 超过整个内存层的值不放入，避免把其他条目全部挤出
+                lruCache.remove(key);
+                return;
             }
-            return data;
+            lruCache.put(key, new MemoryEntry(value, expireMillis, weight));
         }
 
-        private static byte[] copyOfRange(final byte[] original, final int from, final int to) {
-            int newLength = to - from;
-            if (newLength < 0) throw new IllegalArgumentException(from + " > " + to);
-            byte[] copy = new byte[newLength];
-            System.arraycopy(original, from, copy, 0, Math.min(original.length - from, newLength));
-            return copy;
+        private void remove(final String key) {
+            lruCache.remove(key);
         }
 
-        private static boolean hasTimeInfo(final byte[] data) {
-            return data != null
-                    && data.length >= timeInfoLen
-                    && data[0] == '_'
-                    && data[1] == '$'
-                    && data[12] == '$'
-                    && data[13] == '_';
+        /**
+         * 是否在内存层中，在时同时记为最近使用
+         */
+        private boolean contains(final String key) {
+            return lruCache.get(key) != null;
+        }
+
+        private void clear() {
+            lruCache.evictAll();
+        }
+
+        private static int weigh(final Object value) {
+            if (value instanceof byte[]) return Math.max(1, ((byte[]) value).length);
+            if (value instanceof String) return Math.max(1, ((String) value).length() << 1);
+            if (value instanceof Bitmap) {
+                final Bitmap bitmap = (Bitmap) value;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    return bitmap.getAllocationByteCount();
+                }
+                return bitmap.getByteCount();
+            }
+            return 1;
+        }
+    }
+
+    private static final class MemoryEntry {
+        private final Object value;
+        private final long   expireMillis;
+        private final int    weight;
+
+        private MemoryEntry(final Object value, final long expireMillis, final int weight) {
+            this.value = value;
+            this.expireMillis = expireMillis;
+            this.weight = weight;
+        }
+    }
+
+    private static class CacheHelper {
+
+        /**
+         * 取不到文件系统块大小时的默认值，ext4 与 f2fs 都是 4 KB
+         */
+        static final int DEFAULT_BLOCK_SIZE = 4096;
+
+        /**
+         * 条目头，定长 24 字节，大端序
+         * <pre>
+         *     0  int   magic "YWC" + 版本号
+         *     4  byte  值类型
+         *     5  byte  保留
+         *     6  short 标志位
+         *     8  long  过期时间点，单位毫秒，-1 表示永不过期
+         *     16 int   数据长度
+         *     20 int   数据的 CRC32
+         * </pre>
+         */
+        static final int  HEADER_LEN = 24;
+        static final int  MAGIC      = 0x59574301;
+
+        /**
+         * 流式读写的缓冲大小
+         */
+        static final int STREAM_BUFFER_SIZE = 8192;
+
+        /**
+         * 头中 flags 的位：数据经过 Deflate 压缩，payloadLength 与 CRC32 都针对压缩后的数据
+         */
+        static final short FLAG_DEFLATE = 1;
+
+        static final byte TYPE_BYTES        = 0;
+        static final byte TYPE_STRING       = 1;
+        static final byte TYPE_JSON_OBJECT  = 2;
+        static final byte TYPE_JSON_ARRAY   = 3;
+        static final byte TYPE_BITMAP       = 4;
+        static final byte TYPE_PARCELABLE   = 5;
+        static final byte TYPE_SERIALIZABLE = 6;
+        static final byte TYPE_CODEC        = 7;
+
+        /**
+         * 旧格式的过期信息 "_$%010d$_" 长度
+         */
+        static final int LEGACY_TIME_INFO_LEN = 14;
+
+        /**
+         * 从文件读出的条目
+         */
+        static final class Record {
+            final byte    type;
+            final long    expireMillis;
+            final byte[]  payload;
+            final boolean legacy;
+            final boolean corrupt;
+
+            private Record(final byte type, final long expireMillis, final byte[] payload, final boolean legacy) {
+                this(type, expireMillis, payload, legacy, false);
+            }
+
+            private Record(final byte type, final long expireMillis, final byte[] payload, final boolean legacy, final boolean corrupt) {
+                this.type = type;
+                this.expireMillis = expireMillis;
+                this.payload = payload;
+                this.legacy = legacy;
+                this.corrupt = corrupt;
+            }
+
+            boolean isDue() {
+                return expireMillis != -1 && System.currentTimeMillis() > expireMillis;
+            }
+        }
+
+        /**
+         * 魔数对得上但长度不符（写到一半、被截断）的条目
+         */
+        private static final Record CORRUPT_RECORD = new Record(TYPE_BYTES, -1, null, false, true);
+
+        /**
+         * 解析出的条目头
+         */
+        static final class Header {
+            final byte  type;
+            final short flags;
+            final long  expireMillis;
+            final int   payloadLength;
+            final int   checksum;
+
+            private Header(final byte type, final short flags, final long expireMillis, final int payloadLength, final int checksum) {
+                this.type = type;
+                this.flags = flags;
+                this.expireMillis = expireMillis;
+                this.payloadLength = payloadLength;
+                this.checksum = checksum;
+            }
+
+            boolean isDue() {
+                return expireMillis != -1 && System.currentTimeMillis() > expireMillis;
+            }
+
+            boolean isDeflated() {
+                return (flags & FLAG_DEFLATE) != 0;
+            }
+        }
+
+        /**
+         * {@link #parseHeader(byte[], long)} 遇到魔数对得上但长度不符时返回的头
+         */
+        private static final Header CORRUPT_HEADER = new Header(TYPE_BYTES, (short) 0, -1, -1, 0);
+
+        private static ByteBuffer newHeader(final byte type, final short flags, final long expireMillis, final byte[] payload) {
+            final CRC32 crc32 = new CRC32();
+            crc32.update(payload, 0, payload.length);
+            return newHeader(type, flags, expireMillis, payload.length, (int) crc32.getValue());
+        }
+
+        private static ByteBuffer newHeader(final byte type, final short flags, final long expireMillis,
+                                            final int payloadLength, final int checksum) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_LEN);
+            header.putInt(MAGIC)
+                    .put(type)
+                    .put((byte) 0)
+                    .putShort(flags)
+                    .putLong(expireMillis)
+                    .putInt(payloadLength)
+                    .putInt(checksum);
+            header.flip();
+            return header;
+        }
+
+        /**
+         * 解析条目头
+         *
+         * @param headerBytes 文件开头的 {@link #HEADER_LEN} 个字节
+         * @param fileLength  文件长度
+         * @return 没有魔数时返回{@code null}，按旧格式处理；有魔数但长度不符时返回{@link #CORRUPT_HEADER}
+         */
+        private static Header parseHeader(final byte[] headerBytes, final long fileLength) {
+            final ByteBuffer header = ByteBuffer.wrap(headerBytes);
+            if (header.getInt() != MAGIC) return null;
+            if (fileLength < HEADER_LEN) return CORRUPT_HEADER;
+            final byte type = header.get();
+            header.get();
+            final short flags = header.getShort();
+            final long expireMillis = header.getLong();
+            final int payloadLength = header.getInt();
+            final int checksum = header.getInt();
+            if (payloadLength != fileLength - HEADER_LEN) return CORRUPT_HEADER;
+            return new Header(type, flags, expireMillis, payloadLength, checksum);
         }
 
-        private static void writeFileFromBytes(final File file, final byte[] bytes) {
+        /**
+         * 写入头和数据，数据直接由原数组写出，不再拼接新数组
+         */
+        private static boolean writeRecord(final File file, final byte type, final short flags,
+                                           final long expireMillis, final byte[] payload) {
             FileChannel fc = null;
             try {
                 fc = new FileOutputStream(file, false).getChannel();
-                fc.write(ByteBuffer.wrap(bytes));
+                final ByteBuffer[] buffers = {newHeader(type, flags, expireMillis, payload), ByteBuffer.wrap(payload)};
+                while (buffers[1].hasRemaining()) {
+                    fc.write(buffers);
+                }
                 fc.force(true);
+                return true;
             } catch (IOException e) {
                 e.printStackTrace();
+                return false;
             } finally {
                 CloseUtils.closeIO(fc);
             }
         }
 
-        private static byte[] readFile2Bytes(final File file) {
-            FileChannel fc = null;
+        /**
+         * 读取条目
+         * <p>先读头，已过期的条目不读数据；数据直接读入结果数组，不再截取拷贝</p>
+         * <p>只有开头没有魔数的文件按旧格式解析，有魔数但长度不符的按损坏处理</p>
+         *
+         * @return 读取失败返回{@code null}
+         */
+        private static Record readRecord(final File file) {
+            RandomAccessFile raf = null;
             try {
-                fc = new RandomAccessFile(file, "r").getChannel();
-                int size = (int) fc.size();
-                MappedByteBuffer mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, size).load();
-                byte[] data = new byte[size];
-                mbb.get(data, 0, size);
-                return data;
+                raf = new RandomAccessFile(file, "r");
+                final long fileLength = raf.length();
+                if (fileLength >= 4) {
+                    final byte[] headerBytes = new byte[HEADER_LEN];
+                    raf.readFully(headerBytes, 0, (int) Math.min(HEADER_LEN, fileLength));
+                    final Header header = parseHeader(headerBytes, fileLength);
+                    if (header == CORRUPT_HEADER) return CORRUPT_RECORD;
+                    if (header != null) {
+                        if (header.isDue()) {
+                            return new Record(header.type, header.expireMillis, null, false);
+                        }
+                        final byte[] payload = new byte[header.payloadLength];
+                        raf.readFully(payload);
+                        final CRC32 crc32 = new CRC32();
+                        crc32.update(payload, 0, payload.length);
+                        if ((int) crc32.getValue() != header.checksum) {
+                            return new Record(header.type, header.expireMillis, null, false, true);
+                        }
+                        if (header.isDeflated()) {
+                            final byte[] inflated = inflate(payload);
+                            return new Record(header.type, header.expireMillis, inflated, false, inflated == null);
+                        }
+                        return new Record(header.type, header.expireMillis, payload, false);
+                    }
+                    raf.seek(0);
+                }
+                final byte[] data = new byte[(int) fileLength];
+                raf.readFully(data);
+                return readLegacyRecord(data);
             } catch (IOException e) {
                 e.printStackTrace();
                 return null;
             } finally {
-                CloseUtils.closeIO(fc);
+                CloseUtils.closeIO(raf);
+            }
+        }
+
+        /**
+         * 获取目录所在文件系统的块大小
+         */
+        @SuppressWarnings("deprecation")
+        static long blockSizeOf(final File dir) {
+            try {
+                final StatFs statFs = new StatFs(dir.getPath());
+                final long blockSize = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                        ? statFs.getBlockSizeLong() : statFs.getBlockSize();
+                return blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+            } catch (IllegalArgumentException e) {
+                return DEFAULT_BLOCK_SIZE;
+            }
+        }
+
+        /**
+         * 打开条目数据的输入流，流已跳过条目头
+         *
+         * @return 不是当前格式时返回{@code null}，由调用方按旧格式处理
+         */
+        private static PayloadInputStream openPayload(final File file) throws IOException {
+            final FileInputStream fis = new FileInputStream(file);
+            return openPayload(fis, fis.getChannel().size());
+        }
+
+        /**
+         * 打开条目数据的输入流，失败时关闭 in
+         *
+         * @param in     从条目头开始的输入流
+         * @param length 条目总长度
+         * @return 不是当前格式或已损坏时返回{@code null}，由调用方读取整个条目区分
+         */
+        private static PayloadInputStream openPayload(final InputStream in, final long length) throws IOException {
+            boolean success = false;
+            try {
+                if (length < HEADER_LEN) return null;
+                final byte[] headerBytes = new byte[HEADER_LEN];
+                int read = 0;
+                while (read < HEADER_LEN) {
+                    final int n = in.read(headerBytes, read, HEADER_LEN - read);
+                    if (n == -1) return null;
+                    read += n;
+                }
+                final Header header = parseHeader(headerBytes, length);
+                if (header == null || header == CORRUPT_HEADER) return null;
+                success = true;
+                return new PayloadInputStream(in, header);
+            } finally {
+                if (!success) CloseUtils.closeIOQuietly(in);
+            }
+        }
+
+        /**
+         * 从段存储的映射内存读取条目，数据只拷贝一次
+         * <p>段存储里没有旧格式的条目，解析不了的都按损坏处理</p>
+         */
+        private static Record readRecord(final ByteBuffer data) {
+            final int length = data.remaining();
+            if (length < HEADER_LEN) return CORRUPT_RECORD;
+            final byte[] headerBytes = new byte[HEADER_LEN];
+            data.get(headerBytes);
+            final Header header = parseHeader(headerBytes, length);
+            if (header == null || header == CORRUPT_HEADER) return CORRUPT_RECORD;
+            if (header.isDue()) return new Record(header.type, header.expireMillis, null, false);
+            final byte[] payload = new byte[header.payloadLength];
+            data.get(payload);
+            final CRC32 crc32 = new CRC32();
+            crc32.update(payload, 0, payload.length);
+            if ((int) crc32.getValue() != header.checksum) {
+                return new Record(header.type, header.expireMillis, null, false, true);
+            }
+            if (header.isDeflated()) {
+                final byte[] inflated = inflate(payload);
+                return new Record(header.type, header.expireMillis, inflated, false, inflated == null);
+            }
+            return new Record(header.type, header.expireMillis, payload, false);
+        }
+
+        /**
+         * 映射内存的输入流
+         */
+        static final class ByteBufferInputStream extends InputStream {
+            private final ByteBuffer buffer;
+
+            ByteBufferInputStream(final ByteBuffer buffer) {
+                this.buffer = buffer;
+            }
+
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(@NonNull final byte[] b, final int off, final int len) {
+                if (len == 0) return 0;
+                if (!buffer.hasRemaining()) return -1;
+                final int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) {
+                final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+                buffer.position(buffer.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        }
+
+        /**
+         * 用 {@link Deflater#BEST_SPEED} 压缩
+         *
+         * @return 压缩后不比原数据小时返回{@code null}
+         */
+        private static byte[] deflate(final byte[] data) {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                // 输出不小于原数据就没有压缩的意义，缓冲区按原数据大小分配
+                final byte[] buffer = new byte[data.length];
+                int length = 0;
+                while (!deflater.finished() && length < buffer.length) {
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+                }
+                if (!deflater.finished()) return null;
+                return Arrays.copyOf(buffer, length);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * @return 数据损坏时返回{@code null}
+         */
+        private static byte[] inflate(final byte[] data) {
+            final Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length * 4);
+                final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                while (!inflater.finished()) {
+                    final int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) return null;
+                    baos.write(buffer, 0, n);
+                }
+                return baos.toByteArray();
+            } catch (DataFormatException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /**
+         * 打开解码后的数据流，压缩的条目边读边解压
+         */
+        private static InputStream decoding(final PayloadInputStream in) {
+            return in.header.isDeflated() ? new InflatingInputStream(in) : in;
+        }
+
+        /**
+         * 解压流，解压结束后把底层流读到末尾，以便触发 CRC 校验
+         */
+        static final class InflatingInputStream extends InflaterInputStream {
+            private InflatingInputStream(final PayloadInputStream in) {
+                super(in, new Inflater(), STREAM_BUFFER_SIZE);
+            }
+
+            @Override
+            public int read(@NonNull final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n == -1) {
+                    while (in.read(buf) != -1) ;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        }
+
+        /**
+         * 条目数据的输入流，读到末尾时校验 CRC32，不一致时抛出 {@link IOException}
+         * <p>调用过 {@link #skip(long)} 后无法再校验</p>
+         */
+        static final class PayloadInputStream extends FilterInputStream {
+            final Header header;
+            private final CRC32 crc32 = new CRC32();
+            private boolean verifiable = true;
+
+            private PayloadInputStream(final InputStream in, final Header header) {
+                super(new BufferedInputStream(in, STREAM_BUFFER_SIZE));
+                this.header = header;
+            }
+
+            @Override
+            public int read() throws IOException {
+                final int b = in.read();
+                if (b == -1) {
+                    verify();
+                } else {
+                    crc32.update(b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(@NonNull final byte[] b, final int off, final int len) throws IOException {
+                final int n = in.read(b, off, len);
+                if (n == -1) {
+                    verify();
+                } else {
+                    crc32.update(b, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                verifiable = false;
+                return in.skip(n);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            private void verify() throws IOException {
+                if (verifiable && (int) crc32.getValue() != header.checksum) {
+                    verifiable = false;
+                    throw new IOException("cache entry checksum mismatch");
+                }
+            }
+        }
+
+        /**
+         * 兼容旧格式：可选的 "_$秒级时间戳$_" 前缀加数据
+         */
+        private static Record readLegacyRecord(final byte[] data) {
+            if (!hasLegacyTimeInfo(data)) return new Record(TYPE_BYTES, -1, data, true);
+            long expireMillis;
+            try {
+                expireMillis = Long.parseLong(new String(data, 2, 10)) * 1000;
+            } catch (NumberFormatException e) {
+                expireMillis = -1;
             }
+            final byte[] payload = new byte[data.length - LEGACY_TIME_INFO_LEN];
+            System.arraycopy(data, LEGACY_TIME_INFO_LEN, payload, 0, payload.length);
+            return new Record(TYPE_BYTES, expireMillis, payload, true);
+        }
+
+        private static boolean hasLegacyTimeInfo(final byte[] data) {
+            return data != null
+                    && data.length >= LEGACY_TIME_INFO_LEN
+                    && data[0] == '_'
+                    && data[1] == '$'
+                    && data[12] == '$'
+                    && data[13] == '_';
         }
 
         private static byte[] string2Bytes(final String string) {
@@ -918,6 +3251,21 @@ public final class Cache01Utils {
             }
         }
 
+        /**
+         * compileSdkVersion 为 28，用不了 API 30 的 WEBP_LOSSY；WEBP 在质量低于 100 时按有损编码
+         */
+        @SuppressWarnings("deprecation")
+        private static Bitmap.CompressFormat webpFormat() {
+            return Bitmap.CompressFormat.WEBP;
+        }
+
+        private static byte[] bitmap2Bytes(final Bitmap bitmap, final Bitmap.CompressFormat format, final int quality) {
+            if (bitmap == null) return null;
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            bitmap.compress(format, quality, baos);
+            return baos.toByteArray();
+        }
+
         private static byte[] bitmap2Bytes(final Bitmap bitmap) {
             if (bitmap == null) return null;
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -929,14 +3277,6 @@ public final class Cache01Utils {
             return (bytes == null || bytes.length == 0) ? null : BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
         }
 
-        private static byte[] drawable2Bytes(final Drawable drawable) {
-            return drawable == null ? null : bitmap2Bytes(drawable2Bitmap(drawable));
-        }
-
-        private static Drawable bytes2Drawable(final byte[] bytes) {
-            return bytes == null ? null : bitmap2Drawable(bytes2Bitmap(bytes));
-        }
-
         private static Bitmap drawable2Bitmap(final Drawable drawable) {
             if (drawable instanceof BitmapDrawable) {
                 BitmapDrawable bitmapDrawable = (BitmapDrawable) drawable;
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : TinyLFU 准入过滤，用 count-min sketch 估计键的近期访问频率
+ * </pre>
+ * <p>每个计数器 4 位，一个 long 装 16 个，每个键在 4 个位置计数，取最小值作为估计；
+ * 累计计数达到表容量的 10 倍时所有计数器减半，频率随时间衰减，过去的热点不会一直占着缓存</p>
+ * <p>按大小准入：新条目要挤掉的最久未使用条目的频率之和低于它自身的频率时才留下，
+ * 一个很大的条目挤不掉一批频繁访问的小条目，一次性扫过的键也挤不掉热点</p>
+ */
+final class CacheAdmission {
+
+    /**
+     * 准入时最多检查的被淘汰条目数
+     */
+    static final int MAX_VICTIMS = 64;
+
+    private static final long[] SEEDS      = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long   RESET_MASK = 0x7777777777777777L;
+    private static final long   ONE_MASK   = 0x1111111111111111L;
+
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+
+    private final long[] table;
+    private final int    tableMask;
+    private final int    sampleSize;
+    private int          additions;
+
+    /**
+     * @param expectedEntries 预计的条目数，决定计数表的大小
+     */
+    CacheAdmission(final int expectedEntries) {
+        int tableSize = 64;
+        while (tableSize < expectedEntries && tableSize < MAX_TABLE_SIZE) {
+            tableSize <<= 1;
+        }
+        table = new long[tableSize];
+        tableMask = tableSize - 1;
+        sampleSize = 10 * tableSize;
+    }
+
+    /**
+     * 记录一次访问
+     */
+    synchronized void increment(final String key) {
+        final int hash = spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) reset();
+    }
+
+    /**
+     * @return 估计的访问频率，0 到 15
+     */
+    synchronized int frequency(final String key) {
+        final int hash = spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int offset = (start + i) << 2;
+            frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * @param candidate        新条目的键
+     * @param victimsFrequency 为它腾出空间要淘汰的条目的频率之和
+     * @return {@code true}: 留下新条目，淘汰旧条目<br>{@code false}: 丢弃新条目
+     */
+    boolean admit(final String candidate, final int victimsFrequency) {
+        return frequency(candidate) > victimsFrequency;
+    }
+
+    private boolean incrementAt(final int index, final int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) == mask) return false;
+        table[index] += 1L << offset;
+        return true;
+    }
+
+    private int indexOf(final int hash, final int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * 所有计数器减半；奇数计数器减半时丢掉的 1 从总数中扣除
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
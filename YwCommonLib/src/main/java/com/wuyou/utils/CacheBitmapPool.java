@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : 按尺寸分桶的 Bitmap 复用池，供缓存解码时作为 inBitmap 使用
+ * </pre>
+ * <p>KitKat 及以上按分配字节数分桶，取不小于所需字节数的最小桶；更早的版本 inBitmap 要求尺寸完全一致且不能缩放，按宽高分桶</p>
+ * <p>放入池中的 Bitmap 会被后续解码覆盖，调用方放入后不可再使用</p>
+ */
+final class CacheBitmapPool {
+
+    /**
+     * 复用的 Bitmap 最多比所需大这么多倍，避免小图长期占着大块内存
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final int maxBytes;
+
+    private final TreeMap<Long, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    /**
+     * 放入顺序，超出容量时从最早放入的开始丢弃
+     */
+    private final ArrayDeque<Bitmap>                order   = new ArrayDeque<>();
+
+    private int currentBytes;
+
+    CacheBitmapPool(final int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 放入可复用的 Bitmap，不可变、已回收或过大的直接回收
+     */
+    synchronized void put(final Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        final int size = sizeOf(bitmap);
+        if (!bitmap.isMutable() || size > maxBytes || isHardware(bitmap)) {
+            bitmap.recycle();
+            return;
+        }
+        final Long key = keyOf(bitmap.getWidth(), bitmap.getHeight(), size);
+        ArrayDeque<Bitmap> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(key, bucket);
+        }
+        bucket.addLast(bitmap);
+        order.addLast(bitmap);
+        currentBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * 取出可以装下指定尺寸的 Bitmap
+     *
+     * @param width      解码后的宽
+     * @param height     解码后的高
+     * @param config     解码的格式
+     * @param sampleSize 解码的采样率
+     * @return 没有合适的返回{@code null}
+     */
+    synchronized Bitmap get(final int width, final int height, final Bitmap.Config config, final int sampleSize) {
+        if (width <= 0 || height <= 0) return null;
+        final int needed = width * height * bytesPerPixel(config);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            final Map.Entry<Long, ArrayDeque<Bitmap>> entry = buckets.ceilingEntry((long) needed);
+            if (entry == null || entry.getKey() > (long) needed * MAX_SIZE_MULTIPLE) return null;
+            return take(entry.getKey(), entry.getValue(), null);
+        }
+        if (sampleSize != 1) return null;
+        final Long key = keyOf(width, height, needed);
+        final ArrayDeque<Bitmap> bucket = buckets.get(key);
+        return bucket == null ? null : take(key, bucket, config);
+    }
+
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    synchronized int getCurrentBytes() {
+        return currentBytes;
+    }
+
+    private Bitmap take(final Long key, final ArrayDeque<Bitmap> bucket, final Bitmap.Config config) {
+        final Iterator<Bitmap> it = bucket.iterator();
+        while (it.hasNext()) {
+            final Bitmap bitmap = it.next();
+            if (config != null && bitmap.getConfig() != config) continue;
+            it.remove();
+            if (bucket.isEmpty()) buckets.remove(key);
+            order.remove(bitmap);
+            currentBytes -= sizeOf(bitmap);
+            return bitmap;
+        }
+        return null;
+    }
+
+    private void trimToSize(final int size) {
+        while (currentBytes > size && !order.isEmpty()) {
+            final Bitmap eldest = order.pollFirst();
+            final Long key = keyOf(eldest.getWidth(), eldest.getHeight(), sizeOf(eldest));
+            final ArrayDeque<Bitmap> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(eldest);
+                if (bucket.isEmpty()) buckets.remove(key);
+            }
+            currentBytes -= sizeOf(eldest);
+            eldest.recycle();
+        }
+    }
+
+    private static Long keyOf(final int width, final int height, final int size) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) return (long) size;
+        return ((long) width << 32) | height;
+    }
+
+    static int sizeOf(final Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static boolean isHardware(final Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.getConfig() == Bitmap.Config.HARDWARE;
+    }
+
+    private static int bytesPerPixel(final Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        return 4;
+    }
+
+    /**
+     * 解码，按目标尺寸计算采样率，并尽量复用池中的 Bitmap
+     *
+     * @param data      编码后的图片数据
+     * @param reqWidth  目标宽，{@code <= 0} 表示不缩放
+     * @param reqHeight 目标高，{@code <= 0} 表示不缩放
+     * @param config    解码格式
+     * @param pool      复用池，可为{@code null}
+     * @return 解码失败返回{@code null}
+     */
+    static Bitmap decode(final byte[] data, final int reqWidth, final int reqHeight,
+                         final Bitmap.Config config, final CacheBitmapPool pool) {
+        if (data == null || data.length == 0) return null;
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        if (pool != null) {
+            // 采样后的尺寸按向上取整估算，宁可多要一点也不能装不下
+            final int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            final int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = pool.get(width, height, config, options.inSampleSize);
+        }
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // inBitmap 不满足解码要求，放回池中后不复用再解码一次
+            if (options.inBitmap == null) throw e;
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    private static int calculateInSampleSize(final int width, final int height, final int reqWidth, final int reqHeight) {
+        if (reqWidth <= 0 || reqHeight <= 0) return 1;
+        int inSampleSize = 1;
+        int w = width;
+        int h = height;
+        while ((w >>= 1) >= reqWidth && (h >>= 1) >= reqHeight) {
+            inSampleSize <<= 1;
+        }
+        return inSampleSize;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : Cache01Utils 内置的编解码器
+ * </pre>
+ * <p>基本类型与字符串使用带长度前缀的紧凑二进制格式，对象使用 Gson 流式读写，Parcelable 使用 Parcel</p>
+ * <p>配合 {@link Cache01Utils#put(String, Object, Cache01Utils.Codec)} 与
+ * {@link Cache01Utils#get(String, Cache01Utils.Codec)} 使用，解码直接读取文件流，不会先把整个条目读入内存</p>
+ */
+public final class CacheCodecs {
+
+    private static final String CHARSET = "UTF-8";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final Gson GSON = new Gson();
+
+    private CacheCodecs() {
+        throw new UnsupportedOperationException("U can't instantiate me...");
+    }
+
+    /**
+     * 字符串，4 字节长度前缀加 UTF-8 字节
+     */
+    public static final Cache01Utils.Codec<String> STRING = new Cache01Utils.Codec<String>() {
+        @Override
+        public void encode(@NonNull final String value, @NonNull final OutputStream out) throws IOException {
+            final byte[] bytes = value.getBytes(CHARSET);
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+            dos.flush();
+        }
+
+        @Override
+        public String decode(@NonNull final InputStream in) throws IOException {
+            final DataInputStream dis = new DataInputStream(in);
+            final int length = dis.readInt();
+            if (length < 0) throw new IOException("bad string length: " + length);
+            return new String(readBytes(dis, length), CHARSET);
+        }
+    };
+
+    /**
+     * 字节数组，4 字节长度前缀
+     */
+    public static final Cache01Utils.Codec<byte[]> BYTES = new Cache01Utils.Codec<byte[]>() {
+        @Override
+        public void encode(@NonNull final byte[] value, @NonNull final OutputStream out) throws IOException {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(value.length);
+            dos.write(value);
+            dos.flush();
+        }
+
+        @Override
+        public byte[] decode(@NonNull final InputStream in) throws IOException {
+            final DataInputStream dis = new DataInputStream(in);
+            final int length = dis.readInt();
+            if (length < 0) throw new IOException("bad bytes length: " + length);
+            return readBytes(dis, length);
+        }
+    };
+
+    public static final Cache01Utils.Codec<Integer> INT = new Cache01Utils.Codec<Integer>() {
+        @Override
+        public void encode(@NonNull final Integer value, @NonNull final OutputStream out) throws IOException {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(value);
+            dos.flush();
+        }
+
+        @Override
+        public Integer decode(@NonNull final InputStream in) throws IOException {
+            return new DataInputStream(in).readInt();
+        }
+    };
+
+    public static final Cache01Utils.Codec<Long> LONG = new Cache01Utils.Codec<Long>() {
+        @Override
+        public void encode(@NonNull final Long value, @NonNull final OutputStream out) throws IOException {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeLong(value);
+            dos.flush();
+        }
+
+        @Override
+        public Long decode(@NonNull final InputStream in) throws IOException {
+            return new DataInputStream(in).readLong();
+        }
+    };
+
+    public static final Cache01Utils.Codec<Float> FLOAT = new Cache01Utils.Codec<Float>() {
+        @Override
+        public void encode(@NonNull final Float value, @NonNull final OutputStream out) throws IOException {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeFloat(value);
+            dos.flush();
+        }
+
+        @Override
+        public Float decode(@NonNull final InputStream in) throws IOException {
+            return new DataInputStream(in).readFloat();
+        }
+    };
+
+    public static final Cache01Utils.Codec<Double> DOUBLE = new Cache01Utils.Codec<Double>() {
+        @Override
+        public void encode(@NonNull final Double value, @NonNull final OutputStream out) throws IOException {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeDouble(value);
+            dos.flush();
+        }
+
+        @Override
+        public Double decode(@NonNull final InputStream in) throws IOException {
+            return new DataInputStream(in).readDouble();
+        }
+    };
+
+    public static final Cache01Utils.Codec<Boolean> BOOLEAN = new Cache01Utils.Codec<Boolean>() {
+        @Override
+        public void encode(@NonNull final Boolean value, @NonNull final OutputStream out) throws IOException {
+            out.write(value ? 1 : 0);
+        }
+
+        @Override
+        public Boolean decode(@NonNull final InputStream in) throws IOException {
+            final int b = in.read();
+            if (b < 0) throw new EOFException();
+            return b != 0;
+        }
+    };
+
+    /**
+     * 列表，4 字节元素个数后依次写入元素
+     * <p>元素编解码器不能超前读取，内置的二进制编解码器都满足，Gson 编解码器不满足</p>
+     *
+     * @param elementCodec 元素编解码器
+     * @return 列表编解码器
+     */
+    public static <T> Cache01Utils.Codec<List<T>> list(@NonNull final Cache01Utils.Codec<T> elementCodec) {
+        return new Cache01Utils.Codec<List<T>>() {
+            @Override
+            public void encode(@NonNull final List<T> value, @NonNull final OutputStream out) throws IOException {
+                final DataOutputStream dos = new DataOutputStream(out);
+                dos.writeInt(value.size());
+                dos.flush();
+                for (T element : value) {
+                    elementCodec.encode(element, out);
+                }
+            }
+
+            @Override
+            public List<T> decode(@NonNull final InputStream in) throws IOException {
+                final int size = new DataInputStream(in).readInt();
+                if (size < 0) throw new IOException("bad list size: " + size);
+                // 长度来自文件，不可信，不按它预分配
+                final List<T> list = new ArrayList<>(Math.min(size, 256));
+                for (int i = 0; i < size; i++) {
+                    list.add(elementCodec.decode(in));
+                }
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Gson 流式编解码器，直接在文件流上读写 JSON，不生成中间字符串
+     *
+     * @param type 类型
+     * @return 编解码器
+     */
+    public static <T> Cache01Utils.Codec<T> gson(@NonNull final Class<T> type) {
+        return gson(GSON, type);
+    }
+
+    /**
+     * Gson 流式编解码器，直接在文件流上读写 JSON，不生成中间字符串
+     *
+     * @param type 类型，泛型类型可用 {@code new TypeToken<List<Foo>>(){}.getType()} 获取
+     * @return 编解码器
+     */
+    public static <T> Cache01Utils.Codec<T> gson(@NonNull final Type type) {
+        return gson(GSON, type);
+    }
+
+    /**
+     * Gson 流式编解码器，直接在文件流上读写 JSON，不生成中间字符串
+     *
+     * @param gson 自定义的 Gson
+     * @param type 类型
+     * @return 编解码器
+     */
+    public static <T> Cache01Utils.Codec<T> gson(@NonNull final Gson gson, @NonNull final Type type) {
+        return new Cache01Utils.Codec<T>() {
+            @Override
+            public void encode(@NonNull final T value, @NonNull final OutputStream out) throws IOException {
+                final JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, CHARSET));
+                try {
+                    gson.toJson(value, type, writer);
+                } catch (RuntimeException e) {
+                    throw new IOException(e.toString());
+                }
+                writer.flush();
+            }
+
+            @Override
+            public T decode(@NonNull final InputStream in) throws IOException {
+                final JsonReader reader = new JsonReader(new InputStreamReader(in, CHARSET));
+                try {
+                    return gson.fromJson(reader, type);
+                } catch (RuntimeException e) {
+                    throw new IOException(e.toString());
+                }
+            }
+        };
+    }
+
+    /**
+     * Parcelable 编解码器，Parcel 的格式与系统版本相关，只适合不跨系统升级的短期缓存
+     *
+     * @param creator 建造器
+     * @return 编解码器
+     */
+    public static <T extends Parcelable> Cache01Utils.Codec<T> parcelable(@NonNull final Parcelable.Creator<T> creator) {
+        return new Cache01Utils.Codec<T>() {
+            @Override
+            public void encode(@NonNull final T value, @NonNull final OutputStream out) throws IOException {
+                final Parcel parcel = Parcel.obtain();
+                try {
+                    value.writeToParcel(parcel, 0);
+                    out.write(parcel.marshall());
+                } finally {
+                    parcel.recycle();
+                }
+            }
+
+            @Override
+            public T decode(@NonNull final InputStream in) throws IOException {
+                final byte[] bytes = readFully(in);
+                final Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.unmarshall(bytes, 0, bytes.length);
+                    parcel.setDataPosition(0);
+                    return creator.createFromParcel(parcel);
+                } catch (RuntimeException e) {
+                    // 数据损坏时抛出 BadParcelableException 等运行时异常
+                    throw new IOException(e.toString());
+                } finally {
+                    parcel.recycle();
+                }
+            }
+        };
+    }
+
+    /**
+     * 读取 length 个字节，长度来自文件，不可信，超过一个缓冲时分块读取，数据不足时抛出 {@link EOFException}，
+     * 不会按损坏的长度一次分配大数组
+     */
+    private static byte[] readBytes(final DataInputStream in, final int length) throws IOException {
+        if (length <= CHUNK_SIZE) {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(CHUNK_SIZE);
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int remaining = length;
+        while (remaining > 0) {
+            final int len = in.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (len == -1) throw new EOFException();
+            baos.write(buffer, 0, len);
+            remaining -= len;
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            baos.write(buffer, 0, len);
+        }
+        return baos.toByteArray();
+    }
+}
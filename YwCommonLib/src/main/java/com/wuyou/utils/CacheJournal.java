@@ -0,0 +1,1390 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.os.Process;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : 缓存目录的追加式日志，供 CacheUtils 与 Cache01Utils 使用
+ *     参考：DiskLruCache 的 journal 设计
+ * </pre>
+ * <p>日志记录完整的键、文件名、大小、过期时间以及访问顺序，启动时顺序读取一次即可恢复索引，
+ * 缓存大小和个数无需再遍历目录；文件名由键的 MD5 生成并在冲突时追加序号，不同的键不会互相覆盖</p>
+ * <pre>
+ *     com.wuyou.utils.CacheJournal
+ *     1
+ *
+ *     PUT 5d41402abc4b2a76b9719d911017c592 1024 -1 hello
+ *     READ 5d41402abc4b2a76b9719d911017c592
+ *     REMOVE 5d41402abc4b2a76b9719d911017c592
+ * </pre>
+ */
+final class CacheJournal {
+
+    static final String JOURNAL_FILE        = "journal";
+    static final String JOURNAL_FILE_TEMP   = "journal.tmp";
+    static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+    static final String TEMP_DIR            = ".tmp";
+    static final String LOCK_FILE           = "journal.lock";
+
+    private static final String MAGIC   = "com.wuyou.utils.CacheJournal";
+    private static final String VERSION = "1";
+    private static final String PUT     = "PUT";
+    private static final String READ    = "READ";
+    private static final String REMOVE  = "REMOVE";
+    private static final String CHARSET = "UTF-8";
+
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    /**
+     * 积攒的 READ 记录上限，超过后丢弃新的记录，只读不写时队列不会无限增长
+     */
+    private static final int MAX_PENDING_READS = 1024;
+
+    /**
+     * 多进程模式下，超过这么久的临时文件才当作残留删除，以免删掉其他进程正在写的
+     */
+    private static final long STALE_TEMP_FILE_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * 多进程模式下，查询时检查其他进程修改的最短间隔，间隔内的查询可能看不到其他进程刚做的修改
+     */
+    private static final long REFRESH_INTERVAL_MILLIS = 100;
+
+    /**
+     * 键锁的分段数，需为 2 的幂
+     */
+    private static final int LOCK_STRIPES = 32;
+
+    /**
+     * 过期索引的排序：先按过期时间点，相同时按键
+     */
+    private static final Comparator<Entry> EXPIRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.expireMillis != o2.expireMillis) return o1.expireMillis < o2.expireMillis ? -1 : 1;
+            return o1.key.compareTo(o2.key);
+        }
+    };
+
+    private final File directory;
+    private final File journalFile;
+    private final File journalFileTmp;
+    private final File journalFileBackup;
+    private final File tempDir;
+    private final File lockFile;
+    private final boolean multiProcess;
+
+    private final Map<String, Entry>           byKey        = new ConcurrentHashMap<>();
+    private final Map<String, Entry>           byFileName   = new HashMap<>();
+    private final LruIndex<String>             lruIndex     = new LruIndex<>();
+    private final ConcurrentLinkedQueue<Entry> pendingReads = new ConcurrentLinkedQueue<>();
+    /**
+     * 旧版本按 key.hashCode() 命名、还没收进日志的文件，文件名到长度
+     */
+    private final Map<String, Long>            legacyFiles  = new ConcurrentHashMap<>();
+    private final AtomicInteger                pendingCount = new AtomicInteger();
+    private final AtomicInteger                tempSequence = new AtomicInteger();
+    private final TreeSet<Entry>               expiryIndex  = new TreeSet<>(EXPIRY_ORDER);
+    private final ReentrantLock[]              keyLocks     = new ReentrantLock[LOCK_STRIPES];
+
+    private volatile long size;
+    private volatile int  count;
+    private volatile long evictionCount;
+    private volatile long evictedBytes;
+    /**
+     * 按文件系统块向上取整后的总大小，淘汰按它计算
+     */
+    private volatile long physicalSize;
+    private long          blockSize = 1;
+    private Writer  journalWriter;
+    private int     redundantOpCount;
+    private boolean journalTruncated;
+    /**
+     * 当前线程批量修改的嵌套层数，只推迟本线程的刷盘，其他线程的单次修改照常刷盘
+     */
+    private final ThreadLocal<int[]> batchDepth = new ThreadLocal<>();
+
+    /**
+     * 多进程模式：锁文件，文件锁本身与日志的代数都在锁文件上；同一进程内打开同一目录的日志共用一个
+     */
+    private volatile ProcessLock      processLock;
+    private int                       processLockDepth;
+    /**
+     * 多进程模式：已回放到的日志长度，以及回放时日志的代数；其他进程重写日志后代数加一
+     */
+    private volatile long             journalOffset;
+    private volatile long             generation;
+    /**
+     * 多进程模式：查询时下一次检查日志变化的时间
+     */
+    private volatile long             nextRefreshMillis;
+
+    /**
+     * 打开 directory 下的日志并回放，日志不存在或已损坏时删除本缓存的文件后重建
+     *
+     * @param directory 缓存目录
+     */
+    CacheJournal(final File directory) {
+        this(directory, false);
+    }
+
+    /**
+     * 打开 directory 下的日志并回放，日志不存在或已损坏时删除本缓存的文件后重建，目录中的其他文件不动
+     * <p>多进程模式下，每次修改都持有锁文件上的 {@link FileChannel#lock()}，先回放其他进程追加的记录再修改，
+     * 修改的记录在释放锁之前刷盘；查询时最多每 {@link #REFRESH_INTERVAL_MILLIS} 检查一次日志，有变化时同样先回放。各进程由此看到同一份索引，按同一个顺序淘汰</p>
+     *
+     * @param directory    缓存目录
+     * @param multiProcess 是否与其他进程共用该目录
+     */
+    CacheJournal(final File directory, final boolean multiProcess) {
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
+        this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+        this.tempDir = new File(directory, TEMP_DIR);
+        this.lockFile = new File(directory, LOCK_FILE);
+        this.multiProcess = multiProcess;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        if (multiProcess) processLock = ProcessLock.open(lockFile);
+        synchronized (this) {
+            acquireProcessLock();
+            try {
+                generation = readGeneration();
+                // 临时文件只在写入过程中存在，打开时残留的都是上次未完成的写入
+                deleteTempFiles(multiProcess ? System.currentTimeMillis() - STALE_TEMP_FILE_MILLIS : Long.MAX_VALUE);
+                if (!tempDir.exists()) tempDir.mkdirs();
+                if (journalFileBackup.exists()) {
+                    if (journalFile.exists()) {
+                        journalFileBackup.delete();
+                    } else {
+                        journalFileBackup.renameTo(journalFile);
+                    }
+                }
+                if (!journalFile.exists() || !readJournal()) {
+                    resetDirectory();
+                } else if (journalTruncated) {
+                    rebuildJournal();
+                }
+                scanLegacyFiles();
+                openWriter();
+            } finally {
+                releaseProcessLock();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 查询
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 获取条目并记为最近使用
+     *
+     * @param key 键
+     * @return 不存在时返回{@code null}
+     */
+    Entry get(final String key) {
+        refreshIfChanged();
+        final Entry entry = byKey.get(key);
+        if (entry == null) return null;
+        lruIndex.touch(key);
+        // 丢掉的 READ 只影响重启后的访问顺序，内存中的顺序不受影响，重写日志时也会按它写出
+        if (pendingCount.incrementAndGet() <= MAX_PENDING_READS) {
+            pendingReads.offer(entry);
+        } else {
+            pendingCount.decrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 把旧版本按 key.hashCode() 命名的文件收进日志，之后按普通条目读取；文件内容仍是旧格式，由调用方读取后改写
+     *
+     * @param key 键
+     * @return 没有该键的旧文件时返回{@code null}
+     */
+    Entry adoptLegacy(final String key) {
+        if (legacyFiles.isEmpty()) return null;
+        synchronized (this) {
+            acquireProcessLock();
+            try {
+                final Entry existing = byKey.get(key);
+                if (existing != null) return existing;
+                final String fileName = legacyNameOf(key);
+                final Long length = legacyFiles.remove(fileName);
+                if (length == null) return null;
+                forgetLegacyFile(length);
+                final File file = new File(directory, fileName);
+                if (!file.isFile() || byFileName.containsKey(fileName)) return null;
+                return commit(key, file, -1);
+            } finally {
+                releaseProcessLock();
+            }
+        }
+    }
+
+    /**
+     * 获取条目，不影响访问顺序
+     *
+     * @param key 键
+     * @return 不存在时返回{@code null}
+     */
+    Entry peek(final String key) {
+        refreshIfChanged();
+        return byKey.get(key);
+    }
+
+    File getFile(final Entry entry) {
+        return new File(directory, entry.fileName);
+    }
+
+    /**
+     * 获取键对应的分段锁
+     * <p>同一个键的写入持有同一把锁依次进行，不同的键大概率落在不同分段上并行写入；
+     * 写入先落临时文件再改名，读取方无需加锁</p>
+     *
+     * @param key 键
+     * @return 锁
+     */
+    Lock lockFor(final String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return keyLocks[h & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * 获取用于写入的临时文件，写完后改名为 target 提交，每次调用得到不同的文件
+     *
+     * @param target 正式文件
+     * @return 临时文件
+     */
+    File newTempFile(final File target) {
+        // 多进程共用临时目录，带上进程号避免重名
+        final String prefix = multiProcess ? target.getName() + "." + Process.myPid() : target.getName();
+        return new File(tempDir, prefix + "." + tempSequence.incrementAndGet());
+    }
+
+    long size() {
+        refreshIfChanged();
+        return size;
+    }
+
+    long physicalSize() {
+        refreshIfChanged();
+        return physicalSize;
+    }
+
+    /**
+     * 设置文件系统的块大小，之后按块向上取整计算占用，淘汰按实际占用的磁盘空间进行
+     *
+     * @param blockSize 块大小，单位字节，默认 1 即按文件长度计算
+     */
+    synchronized void setBlockSize(final long blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+        long total = 0;
+        for (Entry entry : byKey.values()) {
+            total += physical(entry.size);
+        }
+        for (Long length : legacyFiles.values()) {
+            total += physical(length);
+        }
+        physicalSize = total;
+    }
+
+    int count() {
+        refreshIfChanged();
+        return count;
+    }
+
+    /**
+     * @return 打开以来因超出限制被淘汰的条目数
+     */
+    long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return 打开以来因超出限制被淘汰的字节数
+     */
+    long evictedBytes() {
+        return evictedBytes;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 修改
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 获取写入键对应值的文件，已存在的键沿用原文件名，新键分配不冲突的文件名
+     *
+     * @param key 键
+     * @return 待写入的文件
+     */
+    synchronized File newFile(final String key) {
+        acquireProcessLock();
+        try {
+            final Entry entry = byKey.get(key);
+            if (entry != null) return getFile(entry);
+            final String base = md5Hex(key);
+            String fileName = base;
+            for (int i = 1; byFileName.containsKey(fileName) || isReservedName(fileName); i++) {
+                fileName = base + "_" + i;
+            }
+            return new File(directory, fileName);
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 文件写完后提交条目
+     *
+     * @param key          键
+     * @param file         {@link #newFile(String)} 返回并已写入的文件
+     * @param expireMillis 过期时间点，单位毫秒，{@code -1} 表示永不过期
+     * @return 提交后的条目
+     */
+    synchronized Entry commit(final String key, final File file, final long expireMillis) {
+        acquireProcessLock();
+        try {
+            final long length = file.length();
+            Entry entry = byKey.get(key);
+            if (entry == null) {
+                // 新值取代旧版本留下的文件
+                if (!file.getName().equals(legacyNameOf(key))) deleteLegacyFile(legacyNameOf(key));
+                entry = new Entry(key, file.getName());
+                byKey.put(key, entry);
+                byFileName.put(entry.fileName, entry);
+                count++;
+            } else {
+                size -= entry.size;
+                physicalSize -= physical(entry.size);
+                redundantOpCount++;
+            }
+            entry.size = length;
+            setExpireMillis(entry, expireMillis);
+            size += length;
+            physicalSize += physical(length);
+            lruIndex.add(key);
+            writeRecord(PUT + ' ' + entry.fileName + ' ' + length + ' ' + expireMillis + ' ' + escape(key));
+            return entry;
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 把写好的临时文件改名为 file 并提交，多进程模式下改名与记日志在同一次文件锁内完成，两个进程同时写同一个键时日志与文件保持一致
+     *
+     * @param key          键
+     * @param tmpFile      临时文件
+     * @param file         {@link #newFile(String)} 返回的文件
+     * @param expireMillis 过期时间点，单位毫秒，{@code -1} 表示永不过期
+     * @return 改名失败返回{@code null}
+     */
+    synchronized Entry commit(final String key, final File tmpFile, final File file, final long expireMillis) {
+        acquireProcessLock();
+        try {
+            if (!tmpFile.renameTo(file)) return null;
+            return commit(key, file, expireMillis);
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 移除键及其文件
+     *
+     * @param key 键
+     * @return {@code true}: 移除成功或不存在<br>{@code false}: 文件删除失败
+     */
+    synchronized boolean remove(final String key) {
+        acquireProcessLock();
+        try {
+            final Entry entry = byKey.get(key);
+            if (entry == null) return deleteLegacyFile(legacyNameOf(key));
+            final File file = getFile(entry);
+            if (file.exists() && !file.delete()) return false;
+            removeEntry(entry);
+            return true;
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 按最近最少使用的顺序淘汰，直到满足限制
+     *
+     * @param maxSize  最大缓存尺寸，单位字节
+     * @param maxCount 最大缓存个数
+     */
+    synchronized void trimToSize(final long maxSize, final int maxCount) {
+        acquireProcessLock();
+        try {
+            // 旧版本留下的文件升级后没再访问过，比日志中的条目都旧，先淘汰
+            final Iterator<Map.Entry<String, Long>> legacy = legacyFiles.entrySet().iterator();
+            while ((physicalSize > maxSize || count > maxCount) && legacy.hasNext()) {
+                final Map.Entry<String, Long> eldest = legacy.next();
+                new File(directory, eldest.getKey()).delete();
+                legacy.remove();
+                forgetLegacyFile(eldest.getValue());
+                evictionCount++;
+                evictedBytes += eldest.getValue();
+            }
+            while (physicalSize > maxSize || count > maxCount) {
+                final String eldestKey = lruIndex.pollEldest();
+                if (eldestKey == null) return;
+                final Entry eldest = byKey.get(eldestKey);
+                if (eldest == null) continue;
+                getFile(eldest).delete();
+                evictionCount++;
+                evictedBytes += eldest.size;
+                removeEntry(eldest);
+            }
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * TinyLFU 准入：刚提交的新条目超出限制时，把为它腾空间要淘汰的最久未使用条目的频率加起来与它比较，
+     * 新条目更频繁时保留，由随后的 {@link #trimToSize(long, int)} 淘汰旧条目，否则直接删除新条目
+     *
+     * @param candidate 刚提交的新条目的键
+     * @param maxSize   尺寸上限
+     * @param maxCount  个数上限
+     * @param admission 频率估计
+     * @return {@code true}: 保留<br>{@code false}: 已删除
+     */
+    synchronized boolean admit(final String candidate, final long maxSize, final int maxCount,
+                               final CacheAdmission admission) {
+        acquireProcessLock();
+        try {
+            final Entry entry = byKey.get(candidate);
+            if (entry == null) return false;
+            long excessSize = physicalSize - maxSize;
+            int excessCount = count - maxCount;
+            if (excessSize <= 0 && excessCount <= 0) return true;
+            int victimsFrequency = 0;
+            for (String key : lruIndex.eldest(CacheAdmission.MAX_VICTIMS)) {
+                if (excessSize <= 0 && excessCount <= 0) break;
+                final Entry victim = byKey.get(key);
+                if (victim == null || victim == entry) continue;
+                victimsFrequency += admission.frequency(key);
+                excessSize -= physical(victim.size);
+                excessCount--;
+            }
+            if (admission.admit(candidate, victimsFrequency)) return true;
+            getFile(entry).delete();
+            removeEntry(entry);
+            return false;
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 按过期时间点从早到晚删除已过期的条目
+     *
+     * @param now         当前时间，单位毫秒
+     * @param maxCount    本次最多删除的个数
+     * @param removedKeys 用于接收被删除的键，可为{@code null}
+     * @return 释放的字节数
+     */
+    synchronized long removeExpired(final long now, final int maxCount, final List<String> removedKeys) {
+        acquireProcessLock();
+        try {
+            long freed = 0;
+            for (int i = 0; i < maxCount && !expiryIndex.isEmpty(); i++) {
+                final Entry eldest = expiryIndex.first();
+                if (eldest.expireMillis >= now) break;
+                final File file = getFile(eldest);
+                if (file.exists() && !file.delete()) {
+                    // 删除失败时先移出过期索引，避免每次都卡在同一个条目上
+                    expiryIndex.remove(eldest);
+                    continue;
+                }
+                freed += eldest.size;
+                removeEntry(eldest);
+                if (removedKeys != null) removedKeys.add(eldest.key);
+            }
+            return freed;
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 删除所有条目并重写空日志
+     *
+     * @return {@code true}: 清除成功<br>{@code false}: 有文件删除失败
+     */
+    synchronized boolean clear() {
+        acquireProcessLock();
+        try {
+            boolean flag = true;
+            for (Entry entry : new ArrayList<>(byKey.values())) {
+                final File file = getFile(entry);
+                if (file.exists() && !file.delete()) {
+                    flag = false;
+                    continue;
+                }
+                byKey.remove(entry.key);
+                byFileName.remove(entry.fileName);
+                lruIndex.remove(entry.key);
+                expiryIndex.remove(entry);
+                size -= entry.size;
+                physicalSize -= physical(entry.size);
+                count--;
+            }
+            for (String fileName : new ArrayList<>(legacyFiles.keySet())) {
+                if (!deleteLegacyFile(fileName)) flag = false;
+            }
+            discardPendingReads();
+            rebuildJournal();
+            return flag;
+        } finally {
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 当前线程开始批量修改，结束前本线程的修改只写入缓冲不刷盘，可嵌套
+     */
+    void beginBatch() {
+        // 多进程模式下每次修改后都要在释放锁前刷盘，不做批量
+        if (multiProcess) return;
+        final int[] depth = batchDepth.get();
+        if (depth == null) {
+            batchDepth.set(new int[]{1});
+        } else {
+            depth[0]++;
+        }
+    }
+
+    /**
+     * 当前线程结束批量修改，最外层结束时刷盘
+     */
+    void endBatch() {
+        final int[] depth = batchDepth.get();
+        if (depth == null || --depth[0] > 0) return;
+        batchDepth.remove();
+        flush();
+    }
+
+    /**
+     * 把缓冲中的记录写入磁盘
+     */
+    synchronized void flush() {
+        writePendingReads();
+        if (journalWriter == null) return;
+        try {
+            journalWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 写出积攒的记录后关闭日志，之后的修改不再记日志
+     */
+    synchronized void close() {
+        acquireProcessLock();
+        try {
+            writePendingReads();
+            CloseUtils.closeIO(journalWriter);
+            journalWriter = null;
+        } finally {
+            releaseProcessLock();
+        }
+        final ProcessLock lock = processLock;
+        processLock = null;
+        if (lock != null) lock.close();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 多进程
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 获取进程间的文件锁并回放其他进程的修改，可重入，需持有对象锁
+     */
+    private void acquireProcessLock() {
+        if (!multiProcess || processLockDepth++ > 0) return;
+        final ProcessLock lock = processLock;
+        if (lock == null) return;
+        // 拿不到文件锁时只在进程内互斥，不阻塞调用方
+        lock.lock();
+        if (journalWriter != null || journalOffset > 0) catchUp();
+    }
+
+    /**
+     * 刷盘后释放文件锁，需持有对象锁
+     */
+    private void releaseProcessLock() {
+        if (!multiProcess || --processLockDepth > 0) return;
+        writePendingReads();
+        if (journalWriter != null) {
+            try {
+                journalWriter.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        journalOffset = journalFile.length();
+        final ProcessLock lock = processLock;
+        if (lock != null) lock.unlock();
+    }
+
+    /**
+     * 日志长度或代数与已回放的不同时回放，未变化时不加锁
+     * <p>检查本身是一次 stat 加读 8 个字节，每次查询都做代价太高，间隔 {@link #REFRESH_INTERVAL_MILLIS} 内只做一次</p>
+     */
+    private void refreshIfChanged() {
+        if (!multiProcess || processLock == null) return;
+        final long now = System.currentTimeMillis();
+        if (now < nextRefreshMillis) return;
+        nextRefreshMillis = now + REFRESH_INTERVAL_MILLIS;
+        if (journalFile.length() == journalOffset && readGeneration() == generation) return;
+        synchronized (this) {
+            acquireProcessLock();
+            releaseProcessLock();
+        }
+    }
+
+    /**
+     * 回放其他进程追加的记录；日志被其他进程重写过时整体重新读取
+     */
+    private void catchUp() {
+        final long currentGeneration = readGeneration();
+        final long length = journalFile.length();
+        if (currentGeneration != generation || length < journalOffset) {
+            reload();
+            return;
+        }
+        if (length == journalOffset) return;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(journalFile, "r");
+            final byte[] bytes = new byte[(int) (length - journalOffset)];
+            raf.seek(journalOffset);
+            raf.readFully(bytes);
+            int start = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') continue;
+                final String line = new String(bytes, start, i - start, CHARSET);
+                start = i + 1;
+                if (!readJournalLine(line)) {
+                    journalTruncated = true;
+                    break;
+                }
+                redundantOpCount++;
+            }
+            // 末尾没有换行说明有进程写到一半被杀
+            if (start < bytes.length) journalTruncated = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            journalTruncated = true;
+        } finally {
+            CloseUtils.closeIO(raf);
+        }
+        journalOffset = length;
+        if (journalTruncated) rebuildJournal();
+    }
+
+    private void reload() {
+        CloseUtils.closeIO(journalWriter);
+        journalWriter = null;
+        byKey.clear();
+        byFileName.clear();
+        lruIndex.clear();
+        expiryIndex.clear();
+        discardPendingReads();
+        size = 0;
+        physicalSize = 0;
+        count = 0;
+        generation = readGeneration();
+        if (!journalFile.exists() || !readJournal()) {
+            resetDirectory();
+        } else if (journalTruncated) {
+            rebuildJournal();
+        }
+        scanLegacyFiles();
+        openWriter();
+        journalOffset = journalFile.length();
+    }
+
+    private long readGeneration() {
+        final ProcessLock lock = processLock;
+        if (lock == null) return 0;
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            while (buffer.hasRemaining()) {
+                if (lock.channel().read(buffer, buffer.position()) == -1) return 0;
+            }
+            buffer.flip();
+            return buffer.getLong();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void writeGeneration(final long value) {
+        final ProcessLock lock = processLock;
+        if (lock == null) return;
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(value).flip();
+            while (buffer.hasRemaining()) {
+                lock.channel().write(buffer, buffer.position());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 内部实现
+    ///////////////////////////////////////////////////////////////////////////
+
+    private long physical(final long length) {
+        return (length + blockSize - 1) / blockSize * blockSize;
+    }
+
+    private void removeEntry(final Entry entry) {
+        byKey.remove(entry.key);
+        byFileName.remove(entry.fileName);
+        lruIndex.remove(entry.key);
+        expiryIndex.remove(entry);
+        size -= entry.size;
+        physicalSize -= physical(entry.size);
+        count--;
+        redundantOpCount++;
+        writeRecord(REMOVE + ' ' + entry.fileName);
+    }
+
+    /**
+     * 修改过期时间，需持有锁；过期索引按过期时间排序，修改前先移出
+     */
+    private void setExpireMillis(final Entry entry, final long expireMillis) {
+        expiryIndex.remove(entry);
+        entry.expireMillis = expireMillis;
+        if (expireMillis != -1) expiryIndex.add(entry);
+    }
+
+    /**
+     * 找出旧版本按 key.hashCode() 命名、还没收进日志的文件，计入大小与个数，访问到时收进日志，超出限制时先淘汰
+     * <p>旧版本把整个目录都当作自己的，这里只认纯数字的文件名</p>
+     */
+    private void scanLegacyFiles() {
+        for (Long length : legacyFiles.values()) {
+            forgetLegacyFile(length);
+        }
+        legacyFiles.clear();
+        final File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            final String fileName = file.getName();
+            if (!isLegacyFileName(fileName) || byFileName.containsKey(fileName) || !file.isFile()) continue;
+            final long length = file.length();
+            legacyFiles.put(fileName, length);
+            size += length;
+            physicalSize += physical(length);
+            count++;
+        }
+    }
+
+    /**
+     * @return 是否删除成功或不存在
+     */
+    private boolean deleteLegacyFile(final String fileName) {
+        final Long length = legacyFiles.remove(fileName);
+        if (length == null) return true;
+        forgetLegacyFile(length);
+        final File file = new File(directory, fileName);
+        return !file.exists() || file.delete();
+    }
+
+    private void forgetLegacyFile(final long length) {
+        size -= length;
+        physicalSize -= physical(length);
+        count--;
+    }
+
+    private static String legacyNameOf(final String key) {
+        return String.valueOf(key.hashCode());
+    }
+
+    private static boolean isLegacyFileName(final String fileName) {
+        final int len = fileName.length();
+        final int start = len > 0 && fileName.charAt(0) == '-' ? 1 : 0;
+        if (len == start || len - start > 10) return false;
+        for (int i = start; i < len; i++) {
+            final char c = fileName.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        try {
+            Integer.parseInt(fileName);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 是否本缓存创建的文件：日志文件（锁文件除外，删掉后其他进程锁的就不是同一个文件了）或 MD5 命名的条目文件
+     */
+    private static boolean isOwnFileName(final String fileName) {
+        if (JOURNAL_FILE.equals(fileName) || JOURNAL_FILE_TEMP.equals(fileName) || JOURNAL_FILE_BACKUP.equals(fileName)) {
+            return true;
+        }
+        // md5Hex 的 32 位小写十六进制，同名冲突时加 "_序号"
+        final int len = fileName.length();
+        if (len < 32) return false;
+        for (int i = 0; i < 32; i++) {
+            final char c = fileName.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        if (len == 32) return true;
+        if (len == 33 || fileName.charAt(32) != '_') return false;
+        for (int i = 33; i < len; i++) {
+            final char c = fileName.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private boolean isReservedName(final String fileName) {
+        return JOURNAL_FILE.equals(fileName)
+                || JOURNAL_FILE_TEMP.equals(fileName)
+                || JOURNAL_FILE_BACKUP.equals(fileName)
+                || LOCK_FILE.equals(fileName);
+    }
+
+    /**
+     * 顺序读取日志恢复索引
+     *
+     * @return {@code false}: 日志头不匹配，需要重建
+     */
+    private boolean readJournal() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), CHARSET), 8192);
+            if (!MAGIC.equals(reader.readLine())
+                    || !VERSION.equals(reader.readLine())
+                    || !"".equals(reader.readLine())) {
+                return false;
+            }
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // 进程被杀时最后一行可能只写了一半，此后的内容全部丢弃，并在打开后重写日志
+                if (!readJournalLine(line)) {
+                    journalTruncated = true;
+                    break;
+                }
+                lineCount++;
+            }
+            redundantOpCount = lineCount - byKey.size();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            CloseUtils.closeIO(reader);
+        }
+    }
+
+    private boolean readJournalLine(final String line) {
+        final int firstSpace = line.indexOf(' ');
+        if (firstSpace == -1) return false;
+        final String op = line.substring(0, firstSpace);
+        if (PUT.equals(op)) {
+            final String[] parts = line.split(" ", 5);
+            if (parts.length != 5) return false;
+            final long length;
+            final long expireMillis;
+            try {
+                length = Long.parseLong(parts[2]);
+                expireMillis = Long.parseLong(parts[3]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            final String key = unescape(parts[4]);
+            // 其他进程收进日志的旧文件
+            final Long legacyLength = legacyFiles.remove(parts[1]);
+            if (legacyLength != null) forgetLegacyFile(legacyLength);
+            Entry entry = byKey.get(key);
+            if (entry == null) {
+                entry = new Entry(key, parts[1]);
+                byKey.put(key, entry);
+                byFileName.put(entry.fileName, entry);
+                count++;
+            } else {
+                size -= entry.size;
+                physicalSize -= physical(entry.size);
+            }
+            entry.size = length;
+            setExpireMillis(entry, expireMillis);
+            size += length;
+            physicalSize += physical(length);
+            lruIndex.add(key);
+            return true;
+        }
+        final String fileName = line.substring(firstSpace + 1);
+        if (READ.equals(op)) {
+            final Entry entry = byFileName.get(fileName);
+            if (entry != null) lruIndex.add(entry.key);
+            return true;
+        }
+        if (REMOVE.equals(op)) {
+            final Entry entry = byFileName.remove(fileName);
+            if (entry != null) {
+                byKey.remove(entry.key);
+                lruIndex.remove(entry.key);
+                expiryIndex.remove(entry);
+                size -= entry.size;
+                physicalSize -= physical(entry.size);
+                count--;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 日志不可用时，目录中的缓存文件已无法对应到键，删除后重建
+     * <p>目录可能是调用方与其他文件共用的，如 getCacheDir()，只删除本缓存按 {@link #newFile(String)} 命名的文件与日志文件</p>
+     */
+    private void resetDirectory() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && isOwnFileName(file.getName())) file.delete();
+            }
+        }
+        byKey.clear();
+        byFileName.clear();
+        lruIndex.clear();
+        expiryIndex.clear();
+        size = 0;
+        physicalSize = 0;
+        count = 0;
+        rebuildJournal();
+    }
+
+    /**
+     * 按最久未使用在前的顺序重写日志，去掉冗余记录
+     */
+    private void rebuildJournal() {
+        CloseUtils.closeIO(journalWriter);
+        journalWriter = null;
+        discardPendingReads();
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFileTmp), CHARSET), 8192);
+            writer.write(MAGIC);
+            writer.write('\n');
+            writer.write(VERSION);
+            writer.write('\n');
+            writer.write('\n');
+            for (String key : lruIndex.snapshotEldestFirst()) {
+                final Entry entry = byKey.get(key);
+                if (entry == null) continue;
+                writer.write(PUT + ' ' + entry.fileName + ' ' + entry.size + ' ' + entry.expireMillis + ' ' + escape(key));
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            CloseUtils.closeIO(writer);
+        }
+        if (journalFile.exists()) {
+            journalFileBackup.delete();
+            journalFile.renameTo(journalFileBackup);
+        }
+        journalFileTmp.renameTo(journalFile);
+        journalFileBackup.delete();
+        redundantOpCount = 0;
+        journalTruncated = false;
+        openWriter();
+        if (multiProcess) {
+            writeGeneration(++generation);
+            journalOffset = journalFile.length();
+        }
+    }
+
+    private void openWriter() {
+        if (journalWriter != null) return;
+        try {
+            journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), CHARSET), 8192);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeRecord(final String record) {
+        writePendingReads();
+        if (journalWriter == null) return;
+        try {
+            journalWriter.write(record);
+            journalWriter.write('\n');
+            if (batchDepth.get() == null) journalWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (redundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && redundantOpCount >= byKey.size()) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * 读操作不直接写日志，积攒的 READ 记录随下一次写操作一起落盘，最多积攒 {@link #MAX_PENDING_READS} 条
+     */
+    private void writePendingReads() {
+        Entry entry;
+        while ((entry = pendingReads.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (byKey.get(entry.key) != entry || journalWriter == null) continue;
+            redundantOpCount++;
+            try {
+                journalWriter.write(READ + ' ' + entry.fileName);
+                journalWriter.write('\n');
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    private void discardPendingReads() {
+        while (pendingReads.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 删除修改时间早于 before 的临时文件
+     */
+    private void deleteTempFiles(final long before) {
+        final File[] files = tempDir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < before) file.delete();
+        }
+    }
+
+    private static String md5Hex(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(CHARSET));
+            final char[] hexDigits = "0123456789abcdef".toCharArray();
+            final char[] hex = new char[digest.length << 1];
+            for (int i = 0, j = 0; i < digest.length; i++) {
+                hex[j++] = hexDigits[digest[i] >>> 4 & 0x0f];
+                hex[j++] = hexDigits[digest[i] & 0x0f];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+
+    private static String escape(final String key) {
+        if (key.indexOf('\\') == -1 && key.indexOf('\n') == -1 && key.indexOf('\r') == -1) return key;
+        final StringBuilder sb = new StringBuilder(key.length() + 8);
+        for (int i = 0, len = key.length(); i < len; i++) {
+            final char c = key.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(final String escaped) {
+        if (escaped.indexOf('\\') == -1) return escaped;
+        final StringBuilder sb = new StringBuilder(escaped.length());
+        for (int i = 0, len = escaped.length(); i < len; i++) {
+            final char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < len) {
+                final char next = escaped.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 锁文件上的进程间锁，按规范路径在进程内共用
+     * <p>同一个 JVM 内对同一个文件的两个通道同时加 {@link FileChannel#lock()} 会抛出
+     * {@link OverlappingFileLockException}，比如 CacheUtils 与 Cache01Utils 打开同一个目录，或关闭后重新打开；
+     * 共用后进程内先用 {@link ReentrantLock} 排队，再由持有者加文件锁，同一进程的两个日志也像两个进程一样互相回放</p>
+     */
+    private static final class ProcessLock {
+
+        private static final Map<String, ProcessLock> LOCKS = new HashMap<>();
+
+        private final String           path;
+        private final RandomAccessFile raf;
+        private final ReentrantLock    threadLock = new ReentrantLock();
+        private FileLock               fileLock;
+        private int                    refCount;
+
+        private ProcessLock(final String path, final RandomAccessFile raf) {
+            this.path = path;
+            this.raf = raf;
+        }
+
+        static ProcessLock open(final File lockFile) {
+            String path;
+            try {
+                path = lockFile.getCanonicalPath();
+            } catch (IOException e) {
+                path = lockFile.getAbsolutePath();
+            }
+            synchronized (LOCKS) {
+                ProcessLock lock = LOCKS.get(path);
+                if (lock == null) {
+                    try {
+                        lock = new ProcessLock(path, new RandomAccessFile(lockFile, "rw"));
+                    } catch (IOException e) {
+                        throw new RuntimeException("can't open " + lockFile.getAbsolutePath(), e);
+                    }
+                    LOCKS.put(path, lock);
+                }
+                lock.refCount++;
+                return lock;
+            }
+        }
+
+        FileChannel channel() {
+            return raf.getChannel();
+        }
+
+        void lock() {
+            threadLock.lock();
+            if (threadLock.getHoldCount() > 1) return;
+            try {
+                fileLock = raf.getChannel().lock();
+            } catch (IOException | OverlappingFileLockException e) {
+                // 拿不到文件锁时退化为进程内互斥
+                e.printStackTrace();
+            }
+        }
+
+        void unlock() {
+            if (threadLock.getHoldCount() == 1 && fileLock != null) {
+                try {
+                    fileLock.release();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                fileLock = null;
+            }
+            threadLock.unlock();
+        }
+
+        void close() {
+            synchronized (LOCKS) {
+                if (--refCount > 0) return;
+                LOCKS.remove(path);
+            }
+            CloseUtils.closeIO(raf);
+        }
+    }
+
+    /**
+     * 日志中的一个条目
+     */
+    static final class Entry {
+        final String key;
+        final String fileName;
+        volatile long size;
+        volatile long expireMillis = -1;
+
+        private Entry(final String key, final String fileName) {
+            this.key = key;
+            this.fileName = fileName;
+        }
+
+        /**
+         * @return {@code true}: 已过期<br>{@code false}: 未过期或永不过期
+         */
+        boolean isExpired() {
+            return expireMillis != -1 && System.currentTimeMillis() > expireMillis;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的 LRU 索引
+     * <p>touch、淘汰均为 O(1)</p>
+     * <p>读操作的 touch 先记入无锁的读缓冲，在写操作或缓冲积累到一定数量时批量回放，读线程之间不再争抢同一把锁</p>
+     */
+    static final class LruIndex<K> {
+
+        private static final int READ_BUFFER_DRAIN_THRESHOLD = 64;
+
+        private final LinkedHashMap<K, Boolean> accessOrder    = new LinkedHashMap<>(16, 0.75f, true);
+        private final ReentrantLock             evictionLock   = new ReentrantLock();
+        private final ConcurrentLinkedQueue<K>  readBuffer     = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger             readBufferSize = new AtomicInteger();
+
+        /**
+         * 记录一次访问，不阻塞
+         */
+        void touch(final K key) {
+            readBuffer.offer(key);
+            if (readBufferSize.incrementAndGet() >= READ_BUFFER_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+                try {
+                    drainReadBuffer();
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * 添加或刷新为最近使用
+         */
+        void add(final K key) {
+            evictionLock.lock();
+            try {
+                drainReadBuffer();
+                accessOrder.put(key, Boolean.TRUE);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * 移除并返回最久未使用的条目
+         *
+         * @return 索引为空时返回{@code null}
+         */
+        K pollEldest() {
+            evictionLock.lock();
+            try {
+                drainReadBuffer();
+                Iterator<K> iterator = accessOrder.keySet().iterator();
+                if (!iterator.hasNext()) return null;
+                K eldest = iterator.next();
+                iterator.remove();
+                return eldest;
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * @param limit 最多返回的个数
+         * @return 最久未使用的若干个键，最久的在前
+         */
+        List<K> eldest(final int limit) {
+            evictionLock.lock();
+            try {
+                drainReadBuffer();
+                final List<K> keys = new ArrayList<>(Math.min(limit, accessOrder.size()));
+                for (K key : accessOrder.keySet()) {
+                    if (keys.size() >= limit) break;
+                    keys.add(key);
+                }
+                return keys;
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * @return 最久未使用在前的键列表
+         */
+        List<K> snapshotEldestFirst() {
+            evictionLock.lock();
+            try {
+                drainReadBuffer();
+                return new ArrayList<>(accessOrder.keySet());
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        void remove(final K key) {
+            evictionLock.lock();
+            try {
+                accessOrder.remove(key);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        void clear() {
+            evictionLock.lock();
+            try {
+                readBuffer.clear();
+                readBufferSize.set(0);
+                accessOrder.clear();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * 回放读缓冲，需持有 evictionLock
+         */
+        private void drainReadBuffer() {
+            K key;
+            while ((key = readBuffer.poll()) != null) {
+                readBufferSize.decrementAndGet();
+                // accessOrder 为访问顺序，get 即把条目移至队尾，不存在的键不受影响
+                accessOrder.get(key);
+            }
+        }
+    }
+}
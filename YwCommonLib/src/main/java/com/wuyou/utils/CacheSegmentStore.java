@@ -0,0 +1,735 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : 段文件存储，供 Cache01Utils 作为可选的存储引擎
+ * </pre>
+ * <p>条目追加写入少数几个大的段文件，段文件整体映射为 {@link MappedByteBuffer}，读写都不再有逐个文件的 open、close 与目录查找，
+ * 适合大量 1~4 KB 的小条目</p>
+ * <p>内存中保存键到段内偏移的索引，启动时顺序扫描段文件恢复；删除写入墓碑记录；
+ * 失效数据超过一半的段由 {@link #compact()} 把有效条目搬到当前段后删除</p>
+ * <p>写入只落到映射的页缓存，只在段写满封存、批量写入结束等时候才 force() 刷盘，之前的写入不保证持久：
+ * 进程被杀时内核一般仍会写回，系统崩溃或断电时可能丢失；写了一半的尾部由记录头的魔数与条目自带的 CRC32 识别后丢弃</p>
+ * <pre>
+ *     段文件：00000001.seg、00000002.seg ...，单个 4 MB，超大条目独占一个段
+ *     记录：int 魔数 | byte 类型 | byte 保留 | short 键长 | int 数据长 | long 过期时间点 | 键 | 数据
+ * </pre>
+ */
+final class CacheSegmentStore {
+
+    static final String SEGMENT_DIR = "segments";
+    static final String TEMP_DIR    = ".tmp";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHARSET        = "UTF-8";
+
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final int  RECORD_MAGIC      = 0x59575331;
+    private static final int  RECORD_HEADER_LEN = 20;
+    private static final byte KIND_PUT          = 1;
+    private static final byte KIND_REMOVE       = 2;
+
+    /**
+     * 失效数据占段内已写数据的比例达到该百分比时压缩
+     */
+    private static final int COMPACT_DEAD_PERCENT = 50;
+
+    /**
+     * 压缩时每批搬移的字节数，批与批之间释放对象锁，读写不会被整段的拷贝挡住
+     */
+    private static final int COMPACT_BATCH_BYTES = 64 * 1024;
+
+    /**
+     * 键锁的分段数，需为 2 的幂
+     */
+    private static final int LOCK_STRIPES = 32;
+
+    private static final Comparator<Entry> EXPIRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.expireMillis != o2.expireMillis) return o1.expireMillis < o2.expireMillis ? -1 : 1;
+            return o1.key.compareTo(o2.key);
+        }
+    };
+
+    private final File directory;
+    private final File tempDir;
+
+    private final TreeMap<Integer, Segment>        segments     = new TreeMap<>();
+    private final Map<String, Entry>               byKey        = new ConcurrentHashMap<>();
+    private final CacheJournal.LruIndex<String>    lruIndex     = new CacheJournal.LruIndex<>();
+    private final TreeSet<Entry>                   expiryIndex  = new TreeSet<>(EXPIRY_ORDER);
+    private final AtomicInteger                    tempSequence = new AtomicInteger();
+    private final ReentrantLock[]                  keyLocks     = new ReentrantLock[LOCK_STRIPES];
+
+    private Segment active;
+    private Segment compacting;
+    private boolean closed;
+
+    private volatile long size;
+    private volatile int  count;
+    private volatile long evictionCount;
+    private volatile long evictedBytes;
+
+    /**
+     * 打开 directory 下的段文件并扫描恢复索引
+     *
+     * @param directory 段文件目录
+     */
+    CacheSegmentStore(final File directory) {
+        this.directory = directory;
+        this.tempDir = new File(directory, TEMP_DIR);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        if (!directory.exists()) directory.mkdirs();
+        deleteFiles(tempDir);
+        if (!tempDir.exists()) tempDir.mkdirs();
+        synchronized (this) {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    final int id = parseSegmentId(file.getName());
+                    if (id > 0) openSegment(id, file);
+                }
+            }
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                scan(segment);
+            }
+            if (segments.isEmpty() || segments.lastEntry().getValue().sealed) {
+                newActiveSegment(SEGMENT_SIZE);
+            } else {
+                active = segments.lastEntry().getValue();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 查询
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 获取条目并记为最近使用
+     *
+     * @param key 键
+     * @return 不存在时返回{@code null}
+     */
+    Entry get(final String key) {
+        final Entry entry = byKey.get(key);
+        if (entry != null) lruIndex.touch(key);
+        return entry;
+    }
+
+    /**
+     * 获取条目，不影响访问顺序
+     */
+    Entry peek(final String key) {
+        return byKey.get(key);
+    }
+
+    /**
+     * 读取条目数据，返回只读的映射内存，不复制
+     * <p>条目被压缩搬走或删除后，已返回的缓冲仍可读到原数据</p>
+     */
+    ByteBuffer read(final Entry entry) {
+        final ByteBuffer buffer = entry.segment.buffer.duplicate();
+        buffer.limit(entry.dataOffset + entry.dataLength);
+        buffer.position(entry.dataOffset);
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @see CacheJournal#lockFor(String)
+     */
+    Lock lockFor(final String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return keyLocks[h & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * 获取流式写入用的临时文件，写完后由 {@link #put(String, File, long)} 拷入段中
+     */
+    File newTempFile() {
+        return new File(tempDir, "entry." + tempSequence.incrementAndGet());
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * 段文件实际占用的磁盘空间，含尚未压缩掉的失效记录；段在写入位置之后是文件空洞，按写入位置向上取整到块大小
+     *
+     * @param blockSize 文件系统的块大小
+     */
+    synchronized long physicalSize(final long blockSize) {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += (segment.writePosition + blockSize - 1) / blockSize * blockSize;
+        }
+        return total;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long evictionCount() {
+        return evictionCount;
+    }
+
+    long evictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * @return 是否有段的失效数据达到压缩比例
+     */
+    synchronized boolean needsCompaction() {
+        return findCompactionCandidate() != null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 修改
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 追加写入条目
+     *
+     * @param key          键
+     * @param data         条目数据，按顺序拼接
+     * @param expireMillis 过期时间点，单位毫秒，{@code -1} 表示永不过期
+     * @return {@code true}: 写入成功<br>{@code false}: 写入失败，原有条目保持不变
+     */
+    synchronized boolean put(final String key, final ByteBuffer[] data, final long expireMillis) {
+        return append(key, data, expireMillis, true);
+    }
+
+    /**
+     * @param promote 是否记为最近使用，压缩搬移条目时不改变访问顺序
+     */
+    private boolean append(final String key, final ByteBuffer[] data, final long expireMillis, final boolean promote) {
+        long dataLength = 0;
+        for (ByteBuffer buffer : data) {
+            dataLength += buffer.remaining();
+        }
+        final byte[] keyBytes = keyBytes(key);
+        if (keyBytes == null || dataLength > Integer.MAX_VALUE - RECORD_HEADER_LEN - keyBytes.length) return false;
+        final ByteBuffer target = reserve(keyBytes, (int) dataLength);
+        if (target == null) return false;
+        final int offset = target.position();
+        target.position(offset + RECORD_HEADER_LEN + keyBytes.length);
+        for (ByteBuffer buffer : data) {
+            target.put(buffer.duplicate());
+        }
+        commitRecord(target, offset, KIND_PUT, keyBytes, (int) dataLength, expireMillis);
+        putEntry(key, active, offset, keyBytes.length, (int) dataLength, expireMillis, promote);
+        return true;
+    }
+
+    /**
+     * 把临时文件的内容拷入段中，成功后删除临时文件
+     *
+     * @return {@code true}: 写入成功<br>{@code false}: 写入失败，原有条目保持不变
+     */
+    synchronized boolean put(final String key, final File tmpFile, final long expireMillis) {
+        final long fileLength = tmpFile.length();
+        final byte[] keyBytes = keyBytes(key);
+        if (keyBytes == null || fileLength > Integer.MAX_VALUE - RECORD_HEADER_LEN - keyBytes.length) return false;
+        final int dataLength = (int) fileLength;
+        final ByteBuffer target = reserve(keyBytes, dataLength);
+        if (target == null) return false;
+        final int offset = target.position();
+        target.position(offset + RECORD_HEADER_LEN + keyBytes.length);
+        target.limit(target.position() + dataLength);
+        FileChannel fc = null;
+        try {
+            fc = new FileInputStream(tmpFile).getChannel();
+            while (target.hasRemaining()) {
+                if (fc.read(target) == -1) return false;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            CloseUtils.closeIO(fc);
+        }
+        commitRecord(target, offset, KIND_PUT, keyBytes, dataLength, expireMillis);
+        putEntry(key, active, offset, keyBytes.length, dataLength, expireMillis, true);
+        tmpFile.delete();
+        return true;
+    }
+
+    /**
+     * 移除键，写入墓碑记录
+     *
+     * @return {@code true}: 移除成功或不存在<br>{@code false}: 墓碑写入失败
+     */
+    synchronized boolean remove(final String key) {
+        final Entry entry = byKey.get(key);
+        if (entry == null) return true;
+        return removeEntry(entry);
+    }
+
+    /**
+     * 按最近最少使用的顺序淘汰，直到满足限制
+     */
+    synchronized void trimToSize(final long maxSize, final int maxCount) {
+        while (size > maxSize || count > maxCount) {
+            final String eldestKey = lruIndex.pollEldest();
+            if (eldestKey == null) return;
+            final Entry eldest = byKey.get(eldestKey);
+            if (eldest == null) continue;
+            evictionCount++;
+            evictedBytes += eldest.dataLength;
+            removeEntry(eldest);
+        }
+    }
+
+    /**
+     * @see CacheJournal#admit(String, long, int, CacheAdmission)
+     */
+    synchronized boolean admit(final String candidate, final long maxSize, final int maxCount,
+                               final CacheAdmission admission) {
+        final Entry entry = byKey.get(candidate);
+        if (entry == null) return false;
+        long excessSize = size - maxSize;
+        int excessCount = count - maxCount;
+        if (excessSize <= 0 && excessCount <= 0) return true;
+        int victimsFrequency = 0;
+        for (String key : lruIndex.eldest(CacheAdmission.MAX_VICTIMS)) {
+            if (excessSize <= 0 && excessCount <= 0) break;
+            final Entry victim = byKey.get(key);
+            if (victim == null || victim == entry) continue;
+            victimsFrequency += admission.frequency(key);
+            excessSize -= victim.dataLength;
+            excessCount--;
+        }
+        if (admission.admit(candidate, victimsFrequency)) return true;
+        removeEntry(entry);
+        return false;
+    }
+
+    /**
+     * @see CacheJournal#removeExpired(long, int, List)
+     */
+    synchronized long removeExpired(final long now, final int maxCount, final List<String> removedKeys) {
+        long freed = 0;
+        for (int i = 0; i < maxCount && !expiryIndex.isEmpty(); i++) {
+            final Entry eldest = expiryIndex.first();
+            if (eldest.expireMillis >= now) break;
+            if (!removeEntry(eldest)) {
+                expiryIndex.remove(eldest);
+                continue;
+            }
+            freed += eldest.dataLength;
+            if (removedKeys != null) removedKeys.add(eldest.key);
+        }
+        return freed;
+    }
+
+    /**
+     * 删除所有段文件
+     *
+     * @return {@code true}: 清除成功<br>{@code false}: 有文件删除失败
+     */
+    synchronized boolean clear() {
+        boolean flag = true;
+        for (Segment segment : segments.values()) {
+            CloseUtils.closeIO(segment.raf);
+            if (segment.file.exists() && !segment.file.delete()) flag = false;
+        }
+        segments.clear();
+        byKey.clear();
+        lruIndex.clear();
+        expiryIndex.clear();
+        size = 0;
+        count = 0;
+        newActiveSegment(SEGMENT_SIZE);
+        return flag;
+    }
+
+    /**
+     * 把当前段的修改刷到磁盘
+     */
+    synchronized void flush() {
+        if (active != null) active.buffer.force();
+    }
+
+    /**
+     * 刷盘后关闭所有段文件，已映射的内存在回收后解除映射
+     */
+    synchronized void close() {
+        closed = true;
+        flush();
+        for (Segment segment : segments.values()) {
+            CloseUtils.closeIO(segment.raf);
+        }
+    }
+
+    /**
+     * 压缩一个失效数据最多的段：有效条目搬到当前段，仍可能遮住更早记录的墓碑一并搬走，然后删除该段
+     * <p>每搬 {@link #COMPACT_BATCH_BYTES} 释放一次对象锁，其间的读写照常进行，每条记录在搬移时才判断是否仍然有效；
+     * 同一时间只压缩一个段</p>
+     * <p>搬移不算访问，条目在 LRU 中的位置不变</p>
+     *
+     * @return {@code true}: 压缩了一个段<br>{@code false}: 没有需要压缩的段，或压缩中途失败、被清除或关闭
+     */
+    boolean compact() {
+        final Segment victim;
+        synchronized (this) {
+            if (closed || compacting != null) return false;
+            victim = findCompactionCandidate();
+            if (victim == null) return false;
+            compacting = victim;
+        }
+        try {
+            int position = 0;
+            while (true) {
+                synchronized (this) {
+                    // 批与批之间可能被清除或关闭
+                    if (closed || segments.get(victim.id) != victim) return false;
+                    position = compactBatch(victim, position);
+                    if (position < 0) return false;
+                    if (position + RECORD_HEADER_LEN > victim.writePosition) {
+                        segments.remove(victim.id);
+                        CloseUtils.closeIO(victim.raf);
+                        victim.file.delete();
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                compacting = null;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // 内部实现
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * 从 position 开始搬移一批记录，需持有对象锁
+     *
+     * @return 下一批的开始位置，搬移失败返回 -1
+     */
+    private int compactBatch(final Segment victim, int position) {
+        final boolean hasOlder = segments.firstKey() < victim.id;
+        final ByteBuffer buffer = victim.buffer.duplicate();
+        final int batchEnd = position + COMPACT_BATCH_BYTES;
+        while (position < batchEnd && position + RECORD_HEADER_LEN <= victim.writePosition) {
+            buffer.limit(victim.capacity);
+            buffer.position(position);
+            if (buffer.getInt() != RECORD_MAGIC) return victim.writePosition;
+            final byte kind = buffer.get();
+            buffer.get();
+            final int keyLength = buffer.getShort() & 0xffff;
+            final int dataLength = buffer.getInt();
+            final long expireMillis = buffer.getLong();
+            final byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            final String key = newString(keyBytes);
+            final int recordEnd = position + RECORD_HEADER_LEN + keyLength + dataLength;
+            if (kind == KIND_PUT) {
+                final Entry entry = byKey.get(key);
+                if (entry != null && entry.segment == victim && entry.offset == position) {
+                    final ByteBuffer data = victim.buffer.duplicate();
+                    data.limit(recordEnd);
+                    data.position(entry.dataOffset);
+                    if (!append(key, new ByteBuffer[]{data}, expireMillis, false)) return -1;
+                }
+            } else if (kind == KIND_REMOVE && hasOlder && !byKey.containsKey(key)) {
+                if (!appendTombstone(keyBytes)) return -1;
+            }
+            position = recordEnd;
+        }
+        return position;
+    }
+
+    private Segment findCompactionCandidate() {
+        Segment candidate = null;
+        long maxDead = 0;
+        for (Segment segment : segments.values()) {
+            if (segment == active || segment == compacting || segment.writePosition == 0) continue;
+            final long dead = segment.writePosition - segment.liveBytes;
+            if (dead * 100 >= (long) segment.writePosition * COMPACT_DEAD_PERCENT && dead > maxDead) {
+                candidate = segment;
+                maxDead = dead;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * 在当前段中预留一条记录的空间，放不下时换新段
+     *
+     * @return 位置指向记录开头的缓冲，失败返回{@code null}
+     */
+    private ByteBuffer reserve(final byte[] keyBytes, final int dataLength) {
+        final int recordLength = RECORD_HEADER_LEN + keyBytes.length + dataLength;
+        if (active == null || active.writePosition + recordLength > active.capacity) {
+            if (active != null) seal(active);
+            if (!newActiveSegment(Math.max(SEGMENT_SIZE, recordLength))) return null;
+        }
+        final ByteBuffer target = active.buffer.duplicate();
+        target.position(active.writePosition);
+        return target;
+    }
+
+    /**
+     * 写入记录头并推进写入位置；魔数最后写入，写了一半的记录不会被扫描认出
+     */
+    private void commitRecord(final ByteBuffer target, final int offset, final byte kind,
+                              final byte[] keyBytes, final int dataLength, final long expireMillis) {
+        target.limit(active.capacity);
+        target.position(offset + 4);
+        target.put(kind)
+                .put((byte) 0)
+                .putShort((short) keyBytes.length)
+                .putInt(dataLength)
+                .putLong(expireMillis)
+                .put(keyBytes);
+        target.putInt(offset, RECORD_MAGIC);
+        active.writePosition = offset + RECORD_HEADER_LEN + keyBytes.length + dataLength;
+    }
+
+    private boolean appendTombstone(final byte[] keyBytes) {
+        final ByteBuffer target = reserve(keyBytes, 0);
+        if (target == null) return false;
+        commitRecord(target, target.position(), KIND_REMOVE, keyBytes, 0, -1);
+        return true;
+    }
+
+    private void putEntry(final String key, final Segment segment, final int offset,
+                          final int keyLength, final int dataLength, final long expireMillis, final boolean promote) {
+        final Entry entry = new Entry(key, segment, offset, offset + RECORD_HEADER_LEN + keyLength, dataLength, expireMillis);
+        final Entry old = byKey.put(key, entry);
+        if (old != null) {
+            old.segment.liveBytes -= old.recordLength();
+            expiryIndex.remove(old);
+            size -= old.dataLength;
+        } else {
+            count++;
+        }
+        segment.liveBytes += entry.recordLength();
+        if (expireMillis != -1) expiryIndex.add(entry);
+        size += dataLength;
+        if (promote || old == null) lruIndex.add(key);
+    }
+
+    private boolean removeEntry(final Entry entry) {
+        if (!appendTombstone(keyBytes(entry.key))) return false;
+        byKey.remove(entry.key);
+        lruIndex.remove(entry.key);
+        expiryIndex.remove(entry);
+        entry.segment.liveBytes -= entry.recordLength();
+        size -= entry.dataLength;
+        count--;
+        return true;
+    }
+
+    /**
+     * 顺序扫描段内的记录恢复索引，遇到不完整的记录时封存该段，之后不再追加
+     */
+    private void scan(final Segment segment) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        while (position + RECORD_HEADER_LEN <= segment.capacity) {
+            buffer.limit(segment.capacity);
+            buffer.position(position);
+            final int magic = buffer.getInt();
+            if (magic != RECORD_MAGIC) {
+                if (magic != 0) segment.sealed = true;
+                break;
+            }
+            final byte kind = buffer.get();
+            buffer.get();
+            final int keyLength = buffer.getShort() & 0xffff;
+            final int dataLength = buffer.getInt();
+            final long expireMillis = buffer.getLong();
+            final long recordEnd = (long) position + RECORD_HEADER_LEN + keyLength + dataLength;
+            if ((kind != KIND_PUT && kind != KIND_REMOVE) || dataLength < 0 || recordEnd > segment.capacity) {
+                segment.sealed = true;
+                break;
+            }
+            final byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            final String key = newString(keyBytes);
+            if (kind == KIND_PUT) {
+                putEntry(key, segment, position, keyLength, dataLength, expireMillis, true);
+            } else {
+                final Entry entry = byKey.remove(key);
+                if (entry != null) {
+                    lruIndex.remove(key);
+                    expiryIndex.remove(entry);
+                    entry.segment.liveBytes -= entry.recordLength();
+                    size -= entry.dataLength;
+                    count--;
+                }
+            }
+            position = (int) recordEnd;
+        }
+        segment.writePosition = position;
+    }
+
+    private void seal(final Segment segment) {
+        segment.sealed = true;
+        segment.buffer.force();
+    }
+
+    private boolean newActiveSegment(final int capacity) {
+        final int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        final File file = new File(directory, String.format("%08d", id) + SEGMENT_SUFFIX);
+        file.delete();
+        final Segment segment = openSegment(id, file, capacity);
+        if (segment == null) return false;
+        active = segment;
+        return true;
+    }
+
+    private Segment openSegment(final int id, final File file) {
+        return openSegment(id, file, (int) Math.min(Integer.MAX_VALUE, file.length()));
+    }
+
+    private Segment openSegment(final int id, final File file, final int capacity) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            // 新段在映射时扩展为 capacity，未写入的部分是文件空洞，不占磁盘
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            final Segment segment = new Segment(id, file, raf, buffer, capacity);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            e.printStackTrace();
+            CloseUtils.closeIO(raf);
+            return null;
+        }
+    }
+
+    private static int parseSegmentId(final String fileName) {
+        if (!fileName.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] keyBytes(final String key) {
+        try {
+            final byte[] bytes = key.getBytes(CHARSET);
+            return bytes.length > 0xffff ? null : bytes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String newString(final byte[] bytes) {
+        try {
+            return new String(bytes, CHARSET);
+        } catch (IOException e) {
+            return new String(bytes);
+        }
+    }
+
+    private static void deleteFiles(final File dir) {
+        final File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isFile()) file.delete();
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static final class Segment {
+        private final int              id;
+        private final File             file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private final int              capacity;
+        private int     writePosition;
+        private long    liveBytes;
+        private boolean sealed;
+
+        private Segment(final int id, final File file, final RandomAccessFile raf,
+                        final MappedByteBuffer buffer, final int capacity) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * 索引中的一个条目，不可变，被覆盖或搬移时整体替换
+     */
+    static final class Entry {
+        final String  key;
+        final long    expireMillis;
+        final int     dataLength;
+        private final Segment segment;
+        private final int     offset;
+        private final int     dataOffset;
+
+        private Entry(final String key, final Segment segment, final int offset, final int dataOffset,
+                      final int dataLength, final long expireMillis) {
+            this.key = key;
+            this.segment = segment;
+            this.offset = offset;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.expireMillis = expireMillis;
+        }
+
+        /**
+         * 段号与段内偏移，按它排序即按磁盘顺序
+         */
+        long location() {
+            return ((long) segment.id << 32) | offset;
+        }
+
+        private int recordLength() {
+            return dataOffset - offset + dataLength;
+        }
+
+        /**
+         * @return {@code true}: 已过期<br>{@code false}: 未过期或永不过期
+         */
+        boolean isExpired() {
+            return expireMillis != -1 && System.currentTimeMillis() > expireMillis;
+        }
+    }
+}
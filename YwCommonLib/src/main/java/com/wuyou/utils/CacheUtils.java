@@ -24,18 +24,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 /**
  * <pre>
@@ -56,8 +52,19 @@ public final class CacheUtils {
     private static final int MAX_COUNT = Integer.MAX_VALUE; // 不限制存放数据的数量
 
     private CacheManager mCache;
+    private String mInstanceKey;
 
-    private static Map<String, CacheUtils> mInstanceMap = new HashMap<String, CacheUtils>();
+    /**
+     * 实例表，已创建的实例无锁读取，创建时按键分片加锁，同一目录不会打开两次
+     */
+    private static final ConcurrentHashMap<String, CacheUtils> mInstanceMap = new ConcurrentHashMap<String, CacheUtils>();
+    private static final Object[] mCreateLocks = new Object[16];
+
+    static {
+        for (int i = 0; i < mCreateLocks.length; i++) {
+            mCreateLocks[i] = new Object();
+        }
+    }
 
     private CacheUtils() {
         throw new UnsupportedOperationException("U can't instantiate me...");
@@ -82,24 +89,52 @@ public final class CacheUtils {
     }
 
     public static CacheUtils get(File cacheDir, long max_zise, int max_count) {
-        CacheUtils manager = mInstanceMap.get(cacheDir.getAbsoluteFile() + myPid());
-        if (manager == null) {
-            manager = new CacheUtils(cacheDir, max_zise, max_count);
-            mInstanceMap.put(cacheDir.getAbsolutePath() + myPid(), manager);
+        return get(cacheDir, max_zise, max_count, false);
+    }
+
+    /**
+     * 获取缓存实例
+     * <p>multiProcess 为{@code true}时可与其他进程共用同一目录：修改通过文件锁串行化，并先回放其他进程写入的日志，
+     * 各进程看到同一份索引、按同一顺序淘汰。共用目录的每个进程都要以多进程模式打开</p>
+     * <p>同一进程内同一目录只有一个实例，以第一次获取时的模式为准</p>
+     *
+     * @param cacheDir     缓存目录
+     * @param max_zise     最大缓存尺寸，单位字节
+     * @param max_count    最大缓存个数
+     * @param multiProcess 是否与其他进程共用该目录
+     * @return {@link CacheUtils}
+     */
+    public static CacheUtils get(File cacheDir, long max_zise, int max_count, boolean multiProcess) {
+        String key = cacheDir.getAbsolutePath() + myPid();
+        CacheUtils manager = mInstanceMap.get(key);
+        if (manager != null) {
+            return manager;
+        }
+        synchronized (createLockFor(key)) {
+            manager = mInstanceMap.get(key);
+            if (manager == null) {
+                manager = new CacheUtils(cacheDir, max_zise, max_count, multiProcess);
+                manager.mInstanceKey = key;
+                mInstanceMap.put(key, manager);
+            }
         }
         return manager;
     }
 
+    private static Object createLockFor(String key) {
+        return mCreateLocks[(key.hashCode() & 0x7fffffff) % mCreateLocks.length];
+    }
+
     private static String myPid() {
         return "_" + android.os.Process.myPid();
     }
 
-    private CacheUtils(File cacheDir, long max_size, int max_count) {
+    private CacheUtils(File cacheDir, long max_size, int max_count, boolean multiProcess) {
         if (!cacheDir.exists() && !cacheDir.mkdirs()) {
             throw new RuntimeException("can't make dirs in "
                     + cacheDir.getAbsolutePath());
         }
-        mCache = new CacheManager(cacheDir, max_size, max_count);
+        mCache = new CacheManager(cacheDir, max_size, max_count, multiProcess);
     }
 
     // =======================================
@@ -114,23 +149,45 @@ public final class CacheUtils {
      *            保存的String数据
      */
     public void put(String key, String value) {
-        File file = mCache.newFile(key);
-        BufferedWriter out = null;
+        putString(key, value, -1);
+    }
+
+    private void putString(String key, String value, long expireMillis) {
+        Lock lock = mCache.lockFor(key);
+        lock.lock();
         try {
-            out = new BufferedWriter(new FileWriter(file), 1024);
-            out.write(value);
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (out != null) {
-                try {
-                    out.flush();
-                    out.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+            File file = mCache.newFile(key);
+            File tmpFile = mCache.newTempFile(file);
+            boolean written = false;
+            FileOutputStream fos = null;
+            BufferedWriter out = null;
+            try {
+                fos = new FileOutputStream(tmpFile);
+                out = new BufferedWriter(new OutputStreamWriter(fos), 1024);
+                out.write(value);
+                out.flush();
+                fos.getFD().sync();
+                written = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                } else if (fos != null) {
+                    try {
+                        fos.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
-            mCache.put(file);
+            mCache.commit(key, tmpFile, file, written, expireMillis);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -145,7 +202,7 @@ public final class CacheUtils {
      *            保存的时间，单位：秒
      */
     public void put(String key, String value, int saveTime) {
-        put(key, Utils.newStringWithDateInfo(saveTime, value));
+        putString(key, Utils.newStringWithDateInfo(saveTime, value), Utils.expireMillis(saveTime));
     }
 
     /**
@@ -156,7 +213,7 @@ public final class CacheUtils {
      */
     public String getAsString(String key) {
         File file = mCache.get(key);
-        if (!file.exists())
+        if (file == null)
             return null;
         boolean removeFile = false;
         BufferedReader in = null;
@@ -293,23 +350,37 @@ public final class CacheUtils {
      *            保存的数据
      */
     public void put(String key, byte[] value) {
-        File file = mCache.newFile(key);
-        FileOutputStream out = null;
+        putBytes(key, value, -1);
+    }
+
+    private void putBytes(String key, byte[] value, long expireMillis) {
+        Lock lock = mCache.lockFor(key);
+        lock.lock();
         try {
-            out = new FileOutputStream(file);
-            out.write(value);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (out != null) {
-                try {
-                    out.flush();
-                    out.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+            File file = mCache.newFile(key);
+            File tmpFile = mCache.newTempFile(file);
+            boolean written = false;
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(tmpFile);
+                out.write(value);
+                out.flush();
+                out.getFD().sync();
+                written = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
-            mCache.put(file);
+            mCache.commit(key, tmpFile, file, written, expireMillis);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -324,7 +395,7 @@ public final class CacheUtils {
      *            保存的时间，单位：秒
      */
     public void put(String key, byte[] value, int saveTime) {
-        put(key, Utils.newByteArrayWithDateInfo(saveTime, value));
+        putBytes(key, Utils.newByteArrayWithDateInfo(saveTime, value), Utils.expireMillis(saveTime));
     }
 
     /**
@@ -338,7 +409,7 @@ public final class CacheUtils {
         boolean removeFile = false;
         try {
             File file = mCache.get(key);
-            if (!file.exists())
+            if (file == null)
                 return null;
             RAFile = new RandomAccessFile(file, "r");
             byte[] byteArray = new byte[(int) RAFile.length()];
@@ -487,10 +558,29 @@ public final class CacheUtils {
      * @return bitmap 数据
      */
     public Bitmap getAsBitmap(String key) {
-        if (getAsBinary(key) == null) {
+        byte[] data = getAsBinary(key);
+        if (data == null) {
             return null;
         }
-        return Utils.Bytes2Bimap(getAsBinary(key));
+        return Utils.Bytes2Bimap(data);
+    }
+
+    /**
+     * 按目标尺寸读取 bitmap 数据，以 2 的幂次采样，结果不小于目标尺寸
+     *
+     * @param key
+     * @param reqWidth
+     *            目标宽
+     * @param reqHeight
+     *            目标高
+     * @return bitmap 数据
+     */
+    public Bitmap getAsBitmap(String key, int reqWidth, int reqHeight) {
+        byte[] data = getAsBinary(key);
+        if (data == null) {
+            return null;
+        }
+        return CacheBitmapPool.decode(data, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, null);
     }
 
     // =======================================
@@ -542,10 +632,7 @@ public final class CacheUtils {
      * @return value 缓存的文件
      */
     public File file(String key) {
-        File f = mCache.newFile(key);
-        if (f.exists())
-            return f;
-        return null;
+        return mCache.get(key);
     }
 
     /**
@@ -565,142 +652,101 @@ public final class CacheUtils {
         mCache.clear();
     }
 
+    /**
+     * 日志刷盘后关闭，并从实例表中移除，之后不可再使用该实例，再次 get 会重新打开
+     */
+    public void close() {
+        synchronized (createLockFor(mInstanceKey)) {
+            mCache.close();
+            mInstanceMap.remove(mInstanceKey, this);
+        }
+    }
+
     /**
      * @title 缓存管理器
      * @author 杨福海（michael） www.yangfuhai.com
      * @version 1.0
      */
     public class CacheManager {
-        private final AtomicLong cacheSize;
-        private final AtomicInteger cacheCount;
         private final long sizeLimit;
         private final int countLimit;
-        private final Map<File, Long> lastUsageDates = Collections
-                .synchronizedMap(new HashMap<File, Long>());
+        private final CacheJournal journal;
         protected File cacheDir;
 
-        private CacheManager(File cacheDir, long sizeLimit, int countLimit) {
+        private CacheManager(File cacheDir, long sizeLimit, int countLimit, boolean multiProcess) {
             this.cacheDir = cacheDir;
             this.sizeLimit = sizeLimit;
             this.countLimit = countLimit;
-            cacheSize = new AtomicLong();
-            cacheCount = new AtomicInteger();
-            calculateCacheSizeAndCacheCount();
+            journal = new CacheJournal(cacheDir, multiProcess);
         }
 
         /**
-         * 计算 cacheSize和cacheCount
+         * 把写好的临时文件改名为正式文件并提交，写入失败时丢弃临时文件，原有数据保持不变
+         *
+         * @param key
+         * @param tmpFile      临时文件
+         * @param file         正式文件
+         * @param written      临时文件是否完整写入
+         * @param expireMillis 过期时间点
          */
-        private void calculateCacheSizeAndCacheCount() {
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    int size = 0;
-                    int count = 0;
-                    File[] cachedFiles = cacheDir.listFiles();
-                    if (cachedFiles != null) {
-                        for (File cachedFile : cachedFiles) {
-                            size += calculateSize(cachedFile);
-                            count += 1;
-                            lastUsageDates.put(cachedFile,
-                                    cachedFile.lastModified());
-                        }
-                        cacheSize.set(size);
-                        cacheCount.set(count);
-                    }
-                }
-            }).start();
-        }
-
-        private void put(File file) {
-            int curCacheCount = cacheCount.get();
-            while (curCacheCount + 1 > countLimit) {
-                long freedSize = removeNext();
-                cacheSize.addAndGet(-freedSize);
-
-                curCacheCount = cacheCount.addAndGet(-1);
+        private void commit(String key, File tmpFile, File file, boolean written, long expireMillis) {
+            if (!written || journal.commit(key, tmpFile, file, expireMillis) == null) {
+                tmpFile.delete();
+                return;
             }
-            cacheCount.addAndGet(1);
+            journal.trimToSize(sizeLimit, countLimit);
+        }
 
-            long valueSize = calculateSize(file);
-            long curCacheSize = cacheSize.get();
-            while (curCacheSize + valueSize > sizeLimit) {
-                long freedSize = removeNext();
-                curCacheSize = cacheSize.addAndGet(-freedSize);
-            }
-            cacheSize.addAndGet(valueSize);
+        private Lock lockFor(String key) {
+            return journal.lockFor(key);
+        }
 
-            Long currentTime = System.currentTimeMillis();
-            file.setLastModified(currentTime);
-            lastUsageDates.put(file, currentTime);
+        private File newTempFile(File file) {
+            return journal.newTempFile(file);
         }
 
+        /**
+         * 获取 key 对应的文件，并记为最近使用
+         *
+         * @param key
+         * @return 不存在时返回{@code null}
+         */
         private File get(String key) {
-            File file = newFile(key);
-            Long currentTime = System.currentTimeMillis();
-            file.setLastModified(currentTime);
-            lastUsageDates.put(file, currentTime);
-
+            CacheJournal.Entry entry = journal.get(key);
+            if (entry == null) {
+                // 旧版本按 hashCode 命名的文件，格式不变，收进日志即可读取
+                entry = journal.adoptLegacy(key);
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired()) {
+                journal.remove(key);
+                return null;
+            }
+            File file = journal.getFile(entry);
+            // 长度与日志记录不一致说明文件被截断或被外部改写
+            if (file.length() != entry.size) {
+                journal.remove(key);
+                return null;
+            }
             return file;
         }
 
         private File newFile(String key) {
-            return new File(cacheDir, key.hashCode() + "");
+            return journal.newFile(key);
         }
 
         private boolean remove(String key) {
-            File image = get(key);
-            return image.delete();
+            return journal.remove(key);
         }
 
         private void clear() {
-            lastUsageDates.clear();
-            cacheSize.set(0);
-            File[] files = cacheDir.listFiles();
-            if (files != null) {
-                for (File f : files) {
-                    f.delete();
-                }
-            }
-        }
-
-        /**
-         * 移除旧的文件
-         *
-         * @return
-         */
-        private long removeNext() {
-            if (lastUsageDates.isEmpty()) {
-                return 0;
-            }
-
-            Long oldestUsage = null;
-            File mostLongUsedFile = null;
-            Set<Map.Entry<File, Long>> entries = lastUsageDates.entrySet();
-            synchronized (lastUsageDates) {
-                for (Map.Entry<File, Long> entry : entries) {
-                    if (mostLongUsedFile == null) {
-                        mostLongUsedFile = entry.getKey();
-                        oldestUsage = entry.getValue();
-                    } else {
-                        Long lastValueUsage = entry.getValue();
-                        if (lastValueUsage < oldestUsage) {
-                            oldestUsage = lastValueUsage;
-                            mostLongUsedFile = entry.getKey();
-                        }
-                    }
-                }
-            }
-
-            long fileSize = calculateSize(mostLongUsedFile);
-            if (mostLongUsedFile.delete()) {
-                lastUsageDates.remove(mostLongUsedFile);
-            }
-            return fileSize;
+            journal.clear();
         }
 
-        private long calculateSize(File file) {
-            return file.length();
+        private void close() {
+            journal.close();
         }
     }
 
@@ -743,6 +789,16 @@ public final class CacheUtils {
             return false;
         }
 
+        /**
+         * 计算过期时间点
+         *
+         * @param second 保存的时间，单位：秒
+         * @return 过期时间点，单位：毫秒
+         */
+        private static long expireMillis(int second) {
+            return System.currentTimeMillis() + second * 1000L;
+        }
+
         private static String newStringWithDateInfo(int second, String strInfo) {
             return createDateInfo(second) + strInfo;
         }
@@ -81,6 +81,10 @@ public final class CrashUtils {
                     System.exit(0);
                     return;
                 }
+                // 进程即将退出，先把 LogUtils 缓冲中还没写入文件的日志写完
+                LogAppender.flushOnCrash();
+                // 崩溃前最近的日志，附在崩溃日志后面
+                final String ringTail = LogRing.crashTail();
                 Date now = new Date(System.currentTimeMillis());
                 String fileName = FORMAT.format(now) + ".txt";
                 final String fullPath = (dir == null ? defaultDir : dir) + fileName;
@@ -101,6 +105,10 @@ public final class CrashUtils {
                                 cause.printStackTrace(pw);
                                 cause = cause.getCause();
                             }
+                            if (ringTail != null) {
+                                pw.write("\n************* Recent Logs ****************\n");
+                                pw.write(ringTail);
+                            }
                         } catch (IOException e) {
                             e.printStackTrace();
                         } finally {
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : LogUtils 写文件用的异步追加器
+ * </pre>
+ * <p>日志先放入定长的环形缓冲，由一个后台线程批量取出写入常开的文件，攒够一定字节数或超过一定时间才刷盘，
+ * 不再每行都打开、写入、关闭一次文件</p>
+ * <p>缓冲满时按溢出策略处理：阻塞调用方、丢弃新日志，或在缓冲接近满时按比例采样</p>
+ * <p>缓冲中的日志可以是拼好的文本，也可以是 {@link LogBinary.Record}，后者在后台线程编码成二进制格式</p>
+ * <p>文件的滚动、压缩与清理见 {@link LogRotator}</p>
+ * <p>崩溃时 {@link CrashUtils} 调用 {@link #flushOnCrash()} 把缓冲中的日志写完再退出</p>
+ */
+final class LogAppender {
+
+    private static final String TAG = "LogAppender";
+
+    /**
+     * 每次从缓冲取出的最大条数
+     */
+    private static final int  BATCH_SIZE                 = 256;
+    private static final long CRASH_FLUSH_TIMEOUT_MILLIS = 2000;
+
+    private static volatile LogAppender sInstance;
+
+    private final ReentrantLock lock     = new ReentrantLock();
+    private final Condition     notEmpty = lock.newCondition();
+    private final Condition     notFull  = lock.newCondition();
+    private final Condition     flushed  = lock.newCondition();
+    private final AtomicLong    dropped  = new AtomicLong();
+    private final LogRotator    rotator  = new LogRotator();
+    private final String        fileHead;
+
+    private String[] paths;
+    private Object[] records;
+    private long[]   ringPositions;
+    private int      head;
+    private int      count;
+    private int      sampleCounter;
+    /**
+     * 已放入缓冲的条数与已刷盘的条数，{@link #flush(long)} 据此等待
+     */
+    private long     appendedSeq;
+    private long     flushedSeq;
+    private boolean  flushRequested;
+
+    private volatile int  overflowPolicy      = LogUtils.OVERFLOW_BLOCK;
+    private volatile int  sampleRate          = 10;
+    private volatile int  flushBytes          = 8 * 1024;
+    private volatile long flushIntervalMillis = 1000;
+    /**
+     * 环形缓冲，在锁内读写
+     */
+    private LogRing ring;
+
+    /**
+     * @param capacity 缓冲的条数
+     * @param fileHead 新建日志文件时先写入的文件头
+     */
+    LogAppender(final int capacity, final String fileHead) {
+        this.paths = new String[Math.max(1, capacity)];
+        this.records = new Object[paths.length];
+        this.ringPositions = new long[paths.length];
+        this.fileHead = fileHead;
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "LogUtils-appender");
+        thread.setDaemon(true);
+        thread.start();
+        sInstance = this;
+    }
+
+    /**
+     * 崩溃时把缓冲中的日志写完并刷盘，最多等待 {@link #CRASH_FLUSH_TIMEOUT_MILLIS}
+     */
+    static void flushOnCrash() {
+        final LogAppender appender = sInstance;
+        if (appender != null) appender.flush(CRASH_FLUSH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 放入一条日志
+     *
+     * @param path   日志文件路径
+     * @param record 日志内容，文本或 {@link LogBinary.Record}
+     * @return {@code false}: 按溢出策略被丢弃
+     */
+    boolean append(final String path, final Object record) {
+        return append(path, record, null);
+    }
+
+    /**
+     * 放入一条日志
+     * <p>ringRecord 在锁内写入 {@link LogRing}，环形缓冲中的顺序与放入缓冲的顺序一致，
+     * 刷盘后确认的位置之前不会有还没放入缓冲的日志</p>
+     *
+     * @param path       日志文件路径
+     * @param record     日志内容，文本或 {@link LogBinary.Record}
+     * @param ringRecord 同时写入环形缓冲的日志，为 {@code null} 时不写
+     * @return {@code false}: 按溢出策略被丢弃
+     */
+    boolean append(final String path, final Object record, final LogBinary.Record ringRecord) {
+        lock.lock();
+        try {
+            if (count == records.length) {
+                if (overflowPolicy != LogUtils.OVERFLOW_BLOCK) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                while (count == records.length) {
+                    notFull.awaitUninterruptibly();
+                }
+            } else if (overflowPolicy == LogUtils.OVERFLOW_SAMPLE && count >= records.length - (records.length >> 2)
+                    && ++sampleCounter % sampleRate != 0) {
+                // 缓冲超过四分之三后只保留 1/sampleRate
+                dropped.incrementAndGet();
+                return false;
+            }
+            final int tail = (head + count) % records.length;
+            paths[tail] = path;
+            records[tail] = record;
+            ringPositions[tail] = ring == null || ringRecord == null
+                    ? -1 : ring.write(ringRecord.time, ringRecord.level, ringRecord.tag, ringRecord.msg);
+            count++;
+            appendedSeq++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待此前放入的日志全部写入并刷盘
+     *
+     * @param timeoutMillis 最多等待的时长
+     * @return {@code false}: 超时
+     */
+    boolean flush(final long timeoutMillis) {
+        lock.lock();
+        try {
+            final long target = appendedSeq;
+            if (flushedSeq >= target) return true;
+            flushRequested = true;
+            notEmpty.signal();
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (flushedSeq < target) {
+                if (nanos <= 0) return false;
+                nanos = flushed.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 修改缓冲条数，缓冲中已有的日志保留
+     */
+    void setCapacity(final int capacity) {
+        lock.lock();
+        try {
+            final int newCapacity = Math.max(Math.max(1, capacity), count);
+            final String[] newPaths = new String[newCapacity];
+            final Object[] newRecords = new Object[newCapacity];
+            final long[] newRingPositions = new long[newCapacity];
+            for (int i = 0; i < count; i++) {
+                newPaths[i] = paths[(head + i) % paths.length];
+                newRecords[i] = records[(head + i) % records.length];
+                newRingPositions[i] = ringPositions[(head + i) % ringPositions.length];
+            }
+            paths = newPaths;
+            records = newRecords;
+            ringPositions = newRingPositions;
+            head = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setOverflowPolicy(final int policy, final int sampleRate) {
+        this.overflowPolicy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    void setFlushPolicy(final int flushBytes, final long flushIntervalMillis) {
+        this.flushBytes = Math.max(0, flushBytes);
+        this.flushIntervalMillis = Math.max(0, flushIntervalMillis);
+    }
+
+    /**
+     * 设置环形缓冲，刷盘后告诉它哪些记录已写入日志文件
+     */
+    void setRing(final LogRing ring) {
+        lock.lock();
+        try {
+            if (ring == this.ring) return;
+            this.ring = ring;
+            // 缓冲中的位置属于之前的环形缓冲
+            for (int i = 0; i < count; i++) {
+                ringPositions[(head + i) % ringPositions.length] = -1;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setRotation(final long maxFileBytes, final int maxFiles, final long maxTotalBytes, final boolean compress) {
+        rotator.setPolicy(maxFileBytes, maxFiles, maxTotalBytes, compress);
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void loop() {
+        final String[] batchPaths = new String[BATCH_SIZE];
+        final Object[] batchRecords = new Object[BATCH_SIZE];
+        final long[] batchRingPositions = new long[BATCH_SIZE];
+        OutputStream out = null;
+        LogBinary.Encoder encoder = null;
+        String currentPath = null;
+        long fileSize = 0;
+        int pendingBytes = 0;
+        long lastFlush = System.currentTimeMillis();
+        long takenSeq = 0;
+        LogRing batchRing = null;
+        // 已写入日志文件、刷盘后可以确认的环形缓冲位置
+        long ringPos = -1;
+        // 有环形缓冲中的记录没写进去，之后不再确认，留给下次启动补写
+        boolean ringStalled = false;
+        while (true) {
+            int n = 0;
+            boolean flushNow;
+            lock.lock();
+            try {
+                while (count == 0 && !flushRequested) {
+                    if (pendingBytes == 0) {
+                        notEmpty.awaitUninterruptibly();
+                        continue;
+                    }
+                    final long wait = lastFlush + flushIntervalMillis - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    try {
+                        notEmpty.await(wait, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                if (ring != batchRing) {
+                    batchRing = ring;
+                    ringPos = -1;
+                    ringStalled = false;
+                }
+                while (n < BATCH_SIZE && count > 0) {
+                    batchPaths[n] = paths[head];
+                    batchRecords[n] = records[head];
+                    batchRingPositions[n] = ringPositions[head];
+                    paths[head] = null;
+                    records[head] = null;
+                    head = (head + 1) % records.length;
+                    count--;
+                    n++;
+                }
+                takenSeq += n;
+                flushNow = flushRequested;
+                if (n > 0) notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (int i = 0; i < n; i++) {
+                final Object record = batchRecords[i];
+                boolean recordWritten = false;
+                try {
+                    if (!batchPaths[i].equals(currentPath)) {
+                        CloseUtils.closeIO(out);
+                        currentPath = batchPaths[i];
+                        out = open(currentPath);
+                        fileSize = new File(currentPath).length();
+                        encoder = null;
+                        if (out != null) {
+                            // 换了文件，之前的文件已写完，交给后台压缩与清理
+                            rotator.maintain(currentPath);
+                            if (record instanceof LogBinary.Record) {
+                                encoder = new LogBinary.Encoder();
+                                pendingBytes += encoder.writeSession(out, System.currentTimeMillis());
+                            }
+                        }
+                    }
+                    if (out != null) {
+                        int written = 0;
+                        if (record instanceof LogBinary.Record) {
+                            if (encoder != null) written = encoder.write(out, (LogBinary.Record) record);
+                        } else {
+                            final byte[] bytes = ((String) record).getBytes("UTF-8");
+                            out.write(bytes);
+                            written = bytes.length;
+                        }
+                        pendingBytes += written;
+                        fileSize += written;
+                        if (rotator.shouldRoll(fileSize)) {
+                            out.close();
+                            out = null;
+                            rotator.roll(currentPath);
+                            currentPath = null;
+                        }
+                        recordWritten = !(record instanceof LogBinary.Record) || encoder != null;
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "log to " + currentPath + " failed!", e);
+                    CloseUtils.closeIO(out);
+                    out = null;
+                    currentPath = null;
+                }
+                if (batchRingPositions[i] > 0) {
+                    if (!recordWritten) {
+                        ringStalled = true;
+                    } else if (!ringStalled) {
+                        ringPos = Math.max(ringPos, batchRingPositions[i]);
+                    }
+                }
+                batchPaths[i] = null;
+                batchRecords[i] = null;
+            }
+            final long now = System.currentTimeMillis();
+            if (flushNow || pendingBytes >= flushBytes || now - lastFlush >= flushIntervalMillis) {
+                boolean flushedOk = true;
+                if (out != null) {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        Log.e(TAG, "flush " + currentPath + " failed!", e);
+                        flushedOk = false;
+                        ringStalled = true;
+                    }
+                }
+                pendingBytes = 0;
+                lastFlush = now;
+                // 只确认确实写进日志文件并刷盘成功的记录
+                if (batchRing != null && flushedOk && ringPos > 0) batchRing.markFlushed(ringPos);
+                ringPos = -1;
+                lock.lock();
+                try {
+                    flushedSeq = takenSeq;
+                    if (count == 0) flushRequested = false;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private OutputStream open(final String path) {
+        final File file = new File(path);
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.e(TAG, "log to " + path + " failed!");
+            return null;
+        }
+        final boolean isNew = !file.exists();
+        try {
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true), 8192);
+            if (isNew) {
+                if (path.endsWith(LogBinary.EXTENSION)) {
+                    LogBinary.Encoder.writeHeader(out, fileHead);
+                } else if (fileHead != null) {
+                    out.write(fileHead.getBytes("UTF-8"));
+                }
+                // 文件头马上落盘，进程在第一次刷盘前被杀也不会留下没有文件头的文件
+                out.flush();
+            }
+            return out;
+        } catch (IOException e) {
+            Log.e(TAG, "log to " + path + " failed!", e);
+            return null;
+        }
+    }
+}
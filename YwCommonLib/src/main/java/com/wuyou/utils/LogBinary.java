@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : LogUtils 二进制日志文件的格式、编码与解码
+ * </pre>
+ * <p>文件结构：</p>
+ * <pre>
+ *     文件头  "YLOG" 版本(1 字节) 设备信息长度(varint) 设备信息(UTF-8)
+ *     会话    0x01 "YLOG" 起始时间毫秒(varint)
+ *     标签    0x02 标签 id(varint) 长度(varint) 标签(UTF-8)
+ *     日志    0x03 距上一条的毫秒差(zigzag varint) 级别(1 字节) 标签 id(varint) 长度(varint) 内容(UTF-8)
+ * </pre>
+ * <p>每次打开文件先写一条会话记录，时间差与标签 id 都从会话开始重新计算；标签在会话中第一次出现时写一条标签记录，
+ * 之后的日志只写 id。进程被杀时末尾可能只写了半条，下次打开接着写的新会话会被这半条的长度吞进去，
+ * 解码时遇到无法解析的数据，或一条记录的范围里出现了会话记录，都会跳到下一条会话记录继续</p>
+ * <p>本类只依赖 JDK，可以拷到电脑上直接运行解码：</p>
+ * <pre>
+ *     java com.wuyou.utils.LogBinary util-10-17.ylog [util-10-17.1.ylog.gz 更多文件或目录]
+ * </pre>
+ */
+public final class LogBinary {
+
+    /**
+     * 二进制日志文件的扩展名
+     */
+    public static final String EXTENSION = ".ylog";
+
+    static final int VERSION = 1;
+
+    private static final byte[] MAGIC        = {'Y', 'L', 'O', 'G'};
+    private static final int    KIND_SESSION = 0x01;
+    private static final int    KIND_TAG     = 0x02;
+    private static final int    KIND_LOG     = 0x03;
+    private static final char[] LEVELS       = {'V', 'D', 'I', 'W', 'E', 'A'};
+    private static final String LINE_SEP     = System.getProperty("line.separator");
+    private static final String GZ           = ".gz";
+
+    private LogBinary() {
+        throw new UnsupportedOperationException("U can't instantiate me...");
+    }
+
+    /**
+     * 解码二进制日志文件或目录下所有的二进制日志文件，输出到标准输出
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: java " + LogBinary.class.getName()
+                    + " <file" + EXTENSION + "[" + GZ + "]|dir>...");
+            return;
+        }
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (String arg : args) {
+            final File file = new File(arg);
+            final List<File> files = new ArrayList<>();
+            if (file.isDirectory()) {
+                final File[] children = file.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        final String name = child.getName();
+                        if (name.endsWith(EXTENSION) || name.endsWith(EXTENSION + GZ)) files.add(child);
+                    }
+                }
+            } else {
+                files.add(file);
+            }
+            for (File f : files) {
+                out.write("==> " + f.getPath() + " <==" + LINE_SEP);
+                InputStream in = null;
+                try {
+                    in = new FileInputStream(f);
+                    // 滚动后压缩的分段
+                    if (f.getName().endsWith(GZ)) in = new GZIPInputStream(in);
+                    decode(in, out);
+                } catch (IOException e) {
+                    out.write("[" + e.getMessage() + "]" + LINE_SEP);
+                } finally {
+                    CloseUtils.closeIO(in);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * 把二进制日志解码成与文本格式相同的可读文本
+     *
+     * @param in  二进制日志
+     * @param out 输出
+     * @throws IOException 读写失败或不是二进制日志
+     */
+    public static void decode(final InputStream in, final Writer out) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, len);
+        }
+        new Decoder(bytes.toByteArray(), out).decode();
+    }
+
+    /**
+     * 一条待编码的日志，在调用线程创建，在写文件线程编码
+     */
+    static final class Record {
+        final long   time;
+        final int    level;
+        final String tag;
+        final String msg;
+
+        Record(final long time, final int level, final String tag, final String msg) {
+            this.time = time;
+            this.level = level;
+            this.tag = tag;
+            this.msg = msg;
+        }
+    }
+
+    /**
+     * 写一个文件的编码器，每次打开文件新建一个
+     */
+    static final class Encoder {
+        private final Map<String, Integer> tags = new HashMap<>();
+        private long lastTime;
+
+        /**
+         * 新文件开头写文件头
+         *
+         * @return 写入的字节数
+         */
+        static int writeHeader(final OutputStream out, final String head) throws IOException {
+            final byte[] headBytes = utf8(head == null ? "" : head);
+            out.write(MAGIC);
+            out.write(VERSION);
+            return MAGIC.length + 1 + writeVarLong(out, headBytes.length) + write(out, headBytes);
+        }
+
+        /**
+         * 打开文件后先写一条会话记录
+         *
+         * @return 写入的字节数
+         */
+        int writeSession(final OutputStream out, final long time) throws IOException {
+            tags.clear();
+            lastTime = time;
+            out.write(KIND_SESSION);
+            out.write(MAGIC);
+            return 1 + MAGIC.length + writeVarLong(out, time);
+        }
+
+        /**
+         * @return 写入的字节数
+         */
+        int write(final OutputStream out, final Record record) throws IOException {
+            int written = 0;
+            final String tag = record.tag == null ? "" : record.tag;
+            Integer id = tags.get(tag);
+            if (id == null) {
+                id = tags.size();
+                tags.put(tag, id);
+                final byte[] tagBytes = utf8(tag);
+                out.write(KIND_TAG);
+                written += 1 + writeVarLong(out, id) + writeVarLong(out, tagBytes.length) + write(out, tagBytes);
+            }
+            final long delta = record.time - lastTime;
+            lastTime = record.time;
+            final byte[] msgBytes = utf8(record.msg == null ? "" : record.msg);
+            out.write(KIND_LOG);
+            written += 1 + writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            out.write(record.level);
+            written += 1 + writeVarLong(out, id) + writeVarLong(out, msgBytes.length) + write(out, msgBytes);
+            return written;
+        }
+
+        private static int writeVarLong(final OutputStream out, long value) throws IOException {
+            int written = 1;
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                written++;
+            }
+            out.write((int) value);
+            return written;
+        }
+
+        private static int write(final OutputStream out, final byte[] bytes) throws IOException {
+            out.write(bytes);
+            return bytes.length;
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[]            data;
+        private final Writer            out;
+        private final Map<Long, String> tags   = new HashMap<>();
+        private final SimpleDateFormat  format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS ", Locale.getDefault());
+        private final Date              date   = new Date();
+        private int                     pos;
+        private long                    lastTime;
+
+        Decoder(final byte[] data, final Writer out) {
+            this.data = data;
+            this.out = out;
+        }
+
+        void decode() throws IOException {
+            if (data.length < MAGIC.length + 1 || !matchMagic(0)) {
+                throw new IOException("not a binary log");
+            }
+            pos = MAGIC.length;
+            final int version = data[pos++] & 0xFF;
+            if (version > VERSION) throw new IOException("unsupported version " + version);
+            try {
+                out.write(readString());
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("truncated header");
+            }
+            while (pos < data.length) {
+                final int start = pos;
+                try {
+                    readRecord();
+                } catch (IndexOutOfBoundsException e) {
+                    // 末尾或中间只写了半条，跳到下一条会话记录
+                    pos = nextSession(start + 1);
+                    out.write("[skipped " + (pos - start) + " corrupted bytes]" + LINE_SEP);
+                }
+            }
+        }
+
+        private void readRecord() throws IOException {
+            final int start = pos;
+            final int kind = data[pos++] & 0xFF;
+            switch (kind) {
+                case KIND_SESSION:
+                    if (!matchMagic(pos)) throw new IndexOutOfBoundsException();
+                    pos += MAGIC.length;
+                    lastTime = readVarLong();
+                    tags.clear();
+                    break;
+                case KIND_TAG:
+                    final long id = readVarLong();
+                    final String name = readString();
+                    checkSpan(start);
+                    tags.put(id, name);
+                    break;
+                case KIND_LOG:
+                    final long zigzag = readVarLong();
+                    final long time = lastTime + ((zigzag >>> 1) ^ -(zigzag & 1));
+                    final int level = data[pos++] & 0xFF;
+                    final String tag = tags.get(readVarLong());
+                    final String msg = readString();
+                    checkSpan(start);
+                    lastTime = time;
+                    date.setTime(time);
+                    out.write(format.format(date));
+                    out.write(level >= 2 && level < 2 + LEVELS.length ? LEVELS[level - 2] : '?');
+                    out.write('/');
+                    out.write(tag == null ? "?" : tag);
+                    out.write(msg);
+                    out.write(LINE_SEP);
+                    break;
+                default:
+                    throw new IndexOutOfBoundsException();
+            }
+        }
+
+        /**
+         * 半条记录后面接着写了新会话时，半条记录的长度会把新会话吞进去，范围里出现会话记录就不接受这条记录
+         */
+        private void checkSpan(final int start) {
+            if (nextSession(start + 1, pos) < pos) throw new IndexOutOfBoundsException();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = data[pos++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        private String readString() throws UnsupportedEncodingException {
+            final long len = readVarLong();
+            if (len < 0 || len > data.length - pos) throw new IndexOutOfBoundsException();
+            final String s = new String(data, pos, (int) len, "UTF-8");
+            pos += (int) len;
+            return s;
+        }
+
+        private boolean matchMagic(final int offset) {
+            if (offset + MAGIC.length > data.length) return false;
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (data[offset + i] != MAGIC[i]) return false;
+            }
+            return true;
+        }
+
+        private int nextSession(final int from) {
+            return nextSession(from, data.length);
+        }
+
+        /**
+         * @return [from, to) 中第一条会话记录的位置，没有时为 {@code to}
+         */
+        private int nextSession(int from, final int to) {
+            for (; from < to; from++) {
+                if (isSession(from)) return from;
+            }
+            return to;
+        }
+
+        /**
+         * 日志内容里碰巧有同样的字节时，再看起始时间能否解析、后面是否接着一条记录或到了末尾
+         */
+        private boolean isSession(final int offset) {
+            if ((data[offset] & 0xFF) != KIND_SESSION || !matchMagic(offset + 1)) return false;
+            final int saved = pos;
+            try {
+                pos = offset + 1 + MAGIC.length;
+                readVarLong();
+                if (pos == data.length) return true;
+                final int next = data[pos] & 0xFF;
+                return next == KIND_SESSION || next == KIND_TAG || next == KIND_LOG;
+            } catch (IndexOutOfBoundsException e) {
+                return false;
+            } finally {
+                pos = saved;
+            }
+        }
+    }
+
+    private static byte[] utf8(final String s) throws UnsupportedEncodingException {
+        return s.getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : 日志调用位置的获取
+ * </pre>
+ * <p>取调用位置要先拿整条调用栈，是打日志最贵的一步，这里按模式决定取不取、多久取一次：</p>
+ * <ul>
+ * <li>{@link LogUtils#LOCATION_OFF}: 不取</li>
+ * <li>{@link LogUtils#LOCATION_FULL}: 每次都取并重新拼接</li>
+ * <li>{@link LogUtils#LOCATION_CACHED}: 每次都取，同一调用位置拼接好的结果缓存下来复用，取调用栈的开销不变</li>
+ * <li>{@link LogUtils#LOCATION_SAMPLED}: 每 sampleRate 次取一次，其余不带位置</li>
+ * </ul>
+ * <p>取到调用栈后从栈顶往下找，跳过日志类自身的帧，遇到第一个调用方帧就停，最多看 {@link #MAX_DEPTH} 帧，
+ * 不再依赖写死的下标</p>
+ */
+final class LogLocator {
+
+    /**
+     * 查找调用方时最多检查的帧数
+     */
+    static final int MAX_DEPTH = 32;
+
+    /**
+     * 缓存的调用位置上限，超过后清空重来
+     */
+    private static final int MAX_CACHE_SIZE = 512;
+
+    private final String                                     loggerClass;
+    private final String                                     loggerPrefix;
+    private final ConcurrentHashMap<StackTraceElement, Object> cache   = new ConcurrentHashMap<>();
+    private final AtomicInteger                              counter = new AtomicInteger();
+
+    private volatile int mode       = LogUtils.LOCATION_CACHED;
+    private volatile int sampleRate = 16;
+
+    /**
+     * @param loggerClass 日志类，它和它的内部类的帧会被跳过
+     */
+    LogLocator(final Class<?> loggerClass) {
+        this.loggerClass = loggerClass.getName();
+        this.loggerPrefix = this.loggerClass + "$";
+    }
+
+    void setMode(final int mode) {
+        this.mode = mode;
+        if (mode != LogUtils.LOCATION_CACHED) cache.clear();
+    }
+
+    int getMode() {
+        return mode;
+    }
+
+    void setSampleRate(final int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 按当前模式获取调用方的栈帧
+     *
+     * @param deep 需要的帧数，从调用方开始往下
+     * @return 调用方开始的栈帧，{@code null} 表示本次不带位置
+     */
+    StackTraceElement[] locate(final int deep) {
+        final int mode = this.mode;
+        if (mode == LogUtils.LOCATION_OFF) return null;
+        if (mode == LogUtils.LOCATION_SAMPLED
+                && counter.getAndIncrement() % sampleRate != 0) return null;
+        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        final int limit = Math.min(stackTrace.length, MAX_DEPTH);
+        for (int i = 0; i < limit; i++) {
+            if (!isLoggerFrame(stackTrace[i].getClassName())) {
+                final int len = Math.max(1, Math.min(deep, stackTrace.length - i));
+                final StackTraceElement[] frames = new StackTraceElement[len];
+                System.arraycopy(stackTrace, i, frames, 0, len);
+                return frames;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return {@link LogUtils#LOCATION_CACHED} 模式下该位置缓存的结果，其余模式或未缓存时为 {@code null}
+     */
+    Object getCached(final StackTraceElement element) {
+        return mode == LogUtils.LOCATION_CACHED ? cache.get(element) : null;
+    }
+
+    /**
+     * 在 {@link LogUtils#LOCATION_CACHED} 模式下缓存该位置拼接好的结果
+     */
+    void putCached(final StackTraceElement element, final Object value) {
+        if (mode != LogUtils.LOCATION_CACHED) return;
+        if (cache.size() >= MAX_CACHE_SIZE) cache.clear();
+        cache.put(element, value);
+    }
+
+    private boolean isLoggerFrame(final String className) {
+        return className.equals(loggerClass)
+                || className.startsWith(loggerPrefix)
+                || className.equals(LogLocator.class.getName());
+    }
+}
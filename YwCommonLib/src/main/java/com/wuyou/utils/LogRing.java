@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : LogUtils 写文件日志的内存映射环形缓冲
+ * </pre>
+ * <p>每条写文件的日志同时写进一个定长的内存映射文件，写入只是内存操作，没有系统调用；进程被杀后这些页仍在内核里，
+ * 会落到文件上，追加器缓冲里还没写入日志文件的内容不会丢</p>
+ * <p>文件结构：32 字节头（魔数、版本、数据区大小、累计写入位置、已写入日志文件的位置）加数据区，
+ * 每条记录为 0x1E 毫秒时间戳 空格 级别/标签内容，UTF-8 编码，写满后从头覆盖</p>
+ * <p>下次启动打开时，已写入日志文件的位置之后的记录按原来的时间重新写入日志文件；
+ * 崩溃时 {@link CrashUtils} 用 {@link #crashTail()} 取最近的记录附在崩溃日志后面</p>
+ * <p>打开时对文件加排他锁并一直持有到 {@link #close()}，同一个文件被其他进程占用时不启用环形缓冲，
+ * 避免把对方还在写的记录当作上次遗留的补写，再把对方的位置清零</p>
+ */
+final class LogRing {
+
+    private static final String TAG = "LogRing";
+
+    private static final int  MAGIC              = 0x59524E47;// "YRNG"
+    private static final int  VERSION            = 1;
+    private static final int  HEADER             = 32;
+    private static final int  CAPACITY_OFFSET    = 8;
+    private static final int  WRITE_POS_OFFSET   = 16;
+    private static final int  FLUSHED_POS_OFFSET = 24;
+    private static final byte RS                 = 0x1E;
+    private static final int  CRASH_TAIL_BYTES   = 16 * 1024;
+
+    private static volatile LogRing sInstance;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private final int              capacity;
+    private long                   writePos;
+    private long                   flushedPos;
+
+    /**
+     * 一条从环形缓冲中恢复的记录
+     */
+    static final class Entry {
+        final long   time;
+        final int    type;
+        final String tag;
+        final String msg;
+
+        Entry(final long time, final int type, final String tag, final String msg) {
+            this.time = time;
+            this.type = type;
+            this.tag = tag;
+            this.msg = msg;
+        }
+    }
+
+    private LogRing(final RandomAccessFile raf, final MappedByteBuffer buffer,
+                    final int capacity, final long writePos, final long flushedPos) {
+        this.raf = raf;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.writePos = writePos;
+        this.flushedPos = flushedPos;
+    }
+
+    /**
+     * 打开环形缓冲，取出上次没写入日志文件的记录后清空
+     *
+     * @param file      环形缓冲文件
+     * @param capacity  数据区字节数
+     * @param recovered 上次没写入日志文件的记录
+     * @return 环形缓冲，失败或文件被占用时为 {@code null}
+     */
+    static LogRing open(final File file, final int capacity, final List<Entry> recovered) {
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) return null;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            final FileChannel channel = raf.getChannel();
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                Log.w(TAG, file + " is in use by another process or instance, ring buffer disabled");
+                return null;
+            }
+            if (raf.length() >= HEADER) {
+                final MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                final int oldCapacity = old.getInt(CAPACITY_OFFSET);
+                if (old.getInt(0) == MAGIC && oldCapacity > 0 && HEADER + (long) oldCapacity <= raf.length()) {
+                    final LogRing last = new LogRing(null, old, oldCapacity,
+                            old.getLong(WRITE_POS_OFFSET), old.getLong(FLUSHED_POS_OFFSET));
+                    recovered.addAll(last.read(last.flushedPos));
+                }
+            }
+            raf.setLength(HEADER + (long) capacity);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(WRITE_POS_OFFSET, 0);
+            buffer.putLong(FLUSHED_POS_OFFSET, 0);
+            final LogRing ring = new LogRing(raf, buffer, capacity, 0, 0);
+            sInstance = ring;
+            raf = null;
+            return ring;
+        } catch (IOException e) {
+            Log.e(TAG, "open " + file + " failed!", e);
+            return null;
+        } finally {
+            // 成功时文件与锁交给实例持有，关闭文件同时释放锁
+            CloseUtils.closeIO(raf);
+        }
+    }
+
+    /**
+     * 崩溃时取最近的记录
+     *
+     * @return 最近约 16 KB 的记录，每条一行，没有打开环形缓冲时为 {@code null}
+     */
+    static String crashTail() {
+        final LogRing ring = sInstance;
+        if (ring == null) return null;
+        final List<Entry> entries;
+        synchronized (ring) {
+            entries = ring.read(ring.writePos - Math.min(ring.capacity, CRASH_TAIL_BYTES));
+        }
+        final SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS ", Locale.getDefault());
+        final StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(format.format(new Date(entry.time)))
+                    .append(levelChar(entry.type))
+                    .append('/')
+                    .append(entry.tag)
+                    .append(entry.msg)
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 写入一条记录，由追加器在放入缓冲的同一把锁内调用，位置的先后与追加器中的先后一致
+     *
+     * @return 写完后的累计位置，刷盘后用 {@link #markFlushed(long)} 确认
+     */
+    synchronized long write(final long time, final int type, final String tag, final String msg) {
+        put(RS);
+        putDecimal(time);
+        put((byte) ' ');
+        put((byte) levelChar(type));
+        put((byte) '/');
+        putUtf8(tag);
+        putUtf8(msg);
+        buffer.putLong(WRITE_POS_OFFSET, writePos);
+        return writePos;
+    }
+
+    /**
+     * 追加器已把 pos 之前的记录写入日志文件
+     */
+    synchronized void markFlushed(final long pos) {
+        if (pos <= flushedPos || pos > writePos) return;
+        flushedPos = pos;
+        buffer.putLong(FLUSHED_POS_OFFSET, pos);
+    }
+
+    /**
+     * 停用环形缓冲：把已写入的记录全部记为已写入日志文件后不再作为当前实例
+     * <p>之后崩溃日志不再附带它的记录，重新打开同一个文件时也不会把停用前的记录再补写一遍</p>
+     */
+    synchronized void close() {
+        flushedPos = writePos;
+        buffer.putLong(FLUSHED_POS_OFFSET, flushedPos);
+        buffer.force();
+        if (sInstance == this) sInstance = null;
+        // 映射在文件关闭后仍然有效，crashTail 已取不到这个实例
+        CloseUtils.closeIO(raf);
+    }
+
+    private void put(final byte b) {
+        buffer.put(HEADER + (int) (writePos % capacity), b);
+        writePos++;
+    }
+
+    private void putDecimal(final long value) {
+        if (value >= 10) putDecimal(value / 10);
+        put((byte) ('0' + (int) (value % 10)));
+    }
+
+    private void putUtf8(final String s) {
+        if (s == null) return;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            int c = s.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < len
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, s.charAt(++i));
+                put((byte) (0xF0 | (c >> 18)));
+                put((byte) (0x80 | ((c >> 12) & 0x3F)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                put((byte) (0xE0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * 读出 from 之后仍在缓冲中的完整记录，开头被覆盖了一半的记录丢弃
+     */
+    private List<Entry> read(final long from) {
+        final List<Entry> entries = new ArrayList<>();
+        final long start = Math.max(Math.max(0, from), writePos - capacity);
+        if (start >= writePos) return entries;
+        final byte[] data = new byte[(int) (writePos - start)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = buffer.get(HEADER + (int) ((start + i) % capacity));
+        }
+        int begin = 0;
+        while (begin < data.length && data[begin] != RS) {
+            begin++;
+        }
+        while (begin < data.length) {
+            int end = begin + 1;
+            while (end < data.length && data[end] != RS) {
+                end++;
+            }
+            final Entry entry = parse(data, begin + 1, end);
+            if (entry != null) entries.add(entry);
+            begin = end;
+        }
+        return entries;
+    }
+
+    private static Entry parse(final byte[] data, final int from, final int to) {
+        long time = 0;
+        int i = from;
+        while (i < to && data[i] >= '0' && data[i] <= '9') {
+            time = time * 10 + (data[i++] - '0');
+        }
+        // 时间、空格、级别、斜杠
+        if (i == from || i + 3 > to || data[i] != ' ' || data[i + 2] != '/') return null;
+        final int type = typeOf((char) data[i + 1]);
+        if (type == -1) return null;
+        final String rest;
+        try {
+            rest = new String(data, i + 3, to - i - 3, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+        // 内容以 " [调用位置]: " 或 ": " 开头，据此分出标签
+        int split = rest.length();
+        final int head = rest.indexOf(" [");
+        final int colon = rest.indexOf(": ");
+        if (head != -1) split = head;
+        if (colon != -1 && colon < split) split = colon;
+        return new Entry(time, type, rest.substring(0, split), rest.substring(split));
+    }
+
+    private static char levelChar(final int type) {
+        return type >= LogUtils.V && type <= LogUtils.A ? "VDIWEA".charAt(type - LogUtils.V) : '?';
+    }
+
+    private static int typeOf(final char level) {
+        final int index = "VDIWEA".indexOf(level);
+        return index == -1 ? -1 : LogUtils.V + index;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : LogUtils 日志文件的滚动、压缩与清理
+ * </pre>
+ * <p>日志文件按天命名 "前缀-MM-dd.扩展名"，日期变化时自然换文件；单个文件超过上限时在写文件线程上改名为
+ * "前缀-MM-dd.序号.扩展名"，接着写一个新文件</p>
+ * <p>写完的文件（改名后的分段、以前日期的文件）在后台线程 gzip 压缩，先写 .gz.tmp 再改名，
+ * 然后按修改时间从旧到新删除，直到文件数与总字节数都不超过上限</p>
+ * <p>当天未改名的文件以及一分钟内改过的未改名文件可能还在被写（切换了格式、其他进程、刚跨过零点），不压缩也不删除</p>
+ */
+final class LogRotator {
+
+    private static final String TAG           = "LogRotator";
+    private static final String GZ            = ".gz";
+    private static final String TMP           = ".tmp";
+    private static final int    DATE_LEN      = "MM-dd".length();
+    private static final long   SETTLE_MILLIS = 60 * 1000;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "LogUtils-rotator");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private volatile long    maxFileBytes;
+    private volatile int     maxFiles;
+    private volatile long    maxTotalBytes;
+    private volatile boolean compress;
+    private volatile String  activePath;
+
+    /**
+     * @param maxFileBytes  单个文件的字节上限，0 表示只按日期滚动
+     * @param maxFiles      日志文件个数上限，0 表示不限
+     * @param maxTotalBytes 日志文件总字节数上限，0 表示不限
+     * @param compress      是否压缩写完的文件
+     */
+    void setPolicy(final long maxFileBytes, final int maxFiles, final long maxTotalBytes, final boolean compress) {
+        this.maxFileBytes = Math.max(0, maxFileBytes);
+        this.maxFiles = Math.max(0, maxFiles);
+        this.maxTotalBytes = Math.max(0, maxTotalBytes);
+        this.compress = compress;
+    }
+
+    /**
+     * @return 文件写到 size 字节后是否需要滚动
+     */
+    boolean shouldRoll(final long size) {
+        final long max = maxFileBytes;
+        return max > 0 && size >= max;
+    }
+
+    /**
+     * 把写满的文件改名为下一个序号的分段，在写文件线程上调用，调用前文件已关闭
+     */
+    void roll(final String path) {
+        final File file = new File(path);
+        final String name = file.getName();
+        final String ext = extensionOf(name);
+        final String base = name.substring(0, name.length() - ext.length());
+        // 序号取已有分段的最大值加一，删掉旧分段后序号也不会倒退
+        int index = 0;
+        final String[] names = file.getParentFile() == null ? null : file.getParentFile().list();
+        if (names != null) {
+            for (String other : names) {
+                index = Math.max(index, segmentIndex(other, base));
+            }
+        }
+        final File segment = new File(file.getParentFile(), base + "." + (index + 1) + ext);
+        if (!file.renameTo(segment)) {
+            Log.e(TAG, "roll " + path + " failed!");
+        }
+        maintain(path);
+    }
+
+    /**
+     * 在后台压缩写完的文件并清理超出上限的旧文件
+     *
+     * @param activePath 正在写的文件
+     */
+    void maintain(final String activePath) {
+        this.activePath = activePath;
+        if (!compress && maxFiles <= 0 && maxTotalBytes <= 0) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 任务可能排队了一会儿，以执行时正在写的文件为准
+                final File active = new File(LogRotator.this.activePath);
+                final File dir = active.getParentFile();
+                final String family = familyOf(active.getName());
+                if (dir == null || family == null) return;
+                final String live = active.getName().substring(0, family.length() + DATE_LEN) + ".";
+                final File[] files = dir.listFiles();
+                if (files == null) return;
+                final long settled = System.currentTimeMillis() - SETTLE_MILLIS;
+                final List<File> logs = new ArrayList<>();
+                long liveBytes = 0;
+                int liveCount = 0;
+                for (File file : files) {
+                    final String name = file.getName();
+                    if (!file.isFile() || !name.startsWith(family)) continue;
+                    if (name.endsWith(TMP)) {
+                        // 上次压缩到一半进程退出留下的
+                        if (file.lastModified() < settled && !file.delete()) {
+                            Log.e(TAG, "delete " + file + " failed!");
+                        }
+                        continue;
+                    }
+                    // 改名后的分段不会再写，不用等
+                    if (isLive(name, live) || (!isSegment(name, family) && file.lastModified() >= settled)) {
+                        liveBytes += file.length();
+                        liveCount++;
+                        continue;
+                    }
+                    logs.add(compress && !name.endsWith(GZ) ? gzip(file) : file);
+                }
+                prune(logs, liveCount, liveBytes);
+            }
+        });
+    }
+
+    private void prune(final List<File> logs, final int liveCount, final long liveBytes) {
+        Collections.sort(logs, new Comparator<File>() {
+            @Override
+            public int compare(final File a, final File b) {
+                final long x = a.lastModified(), y = b.lastModified();
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        int count = logs.size() + liveCount;
+        long total = liveBytes;
+        for (File file : logs) {
+            total += file.length();
+        }
+        final int maxFiles = this.maxFiles;
+        final long maxTotalBytes = this.maxTotalBytes;
+        for (File oldest : logs) {
+            if ((maxFiles <= 0 || count <= maxFiles) && (maxTotalBytes <= 0 || total <= maxTotalBytes)) {
+                return;
+            }
+            final long len = oldest.length();
+            if (oldest.delete()) {
+                count--;
+                total -= len;
+            } else {
+                Log.e(TAG, "delete " + oldest + " failed!");
+            }
+        }
+    }
+
+    /**
+     * @return 压缩后的文件，失败时返回原文件
+     */
+    private static File gzip(final File file) {
+        final File gz = new File(file.getPath() + GZ);
+        final File tmp = new File(gz.getPath() + TMP);
+        if (gz.exists()) return file;
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            final byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(gz)) throw new IOException("rename " + tmp + " failed");
+            gz.setLastModified(file.lastModified());
+            if (!file.delete()) Log.e(TAG, "delete " + file + " failed!");
+            return gz;
+        } catch (IOException e) {
+            Log.e(TAG, "gzip " + file + " failed!", e);
+            CloseUtils.closeIOQuietly(out);
+            if (tmp.exists() && !tmp.delete()) Log.e(TAG, "delete " + tmp + " failed!");
+            return file;
+        } finally {
+            CloseUtils.closeIO(in);
+        }
+    }
+
+    /**
+     * @return 同一前缀的日志文件名的共同开头 "前缀-"，由 "前缀-MM-dd.扩展名" 去掉日期与扩展名得到
+     */
+    private static String familyOf(final String activeName) {
+        final int end = activeName.length() - extensionOf(activeName).length() - DATE_LEN;
+        return end > 0 ? activeName.substring(0, end) : null;
+    }
+
+    /**
+     * @param live 当天文件名去掉扩展名后加 "."，如 "util-10-17."
+     * @return 是否当天未改名的文件，如 util-10-17.txt、util-10-17.ylog
+     */
+    private static boolean isLive(final String name, final String live) {
+        return name.startsWith(live) && name.indexOf('.', live.length()) == -1;
+    }
+
+    private static boolean isSegment(final String name, final String family) {
+        final int baseLen = family.length() + DATE_LEN;
+        return name.length() > baseLen && segmentIndex(name, name.substring(0, baseLen)) > 0;
+    }
+
+    /**
+     * @return name 是 base 的第几个分段，如 base 为 util-10-17 时 util-10-17.3.txt.gz 为 3，不是分段时为 0
+     */
+    private static int segmentIndex(final String name, final String base) {
+        if (!name.startsWith(base + ".")) return 0;
+        int index = 0;
+        for (int i = base.length() + 1; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c == '.') return index;
+            if (c < '0' || c > '9' || index > Integer.MAX_VALUE / 10 - 1) return 0;
+            index = index * 10 + (c - '0');
+        }
+        return 0;
+    }
+
+    private static String extensionOf(final String name) {
+        final int dot = name.lastIndexOf('.');
+        return dot == -1 ? "" : name.substring(dot);
+    }
+}
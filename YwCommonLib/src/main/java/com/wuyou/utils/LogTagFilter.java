@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2026.
+ * Created by QiuQiu on 2026/10/17.
+ * All Rights Reserved.
+ */
+package com.wuyou.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ *     author: YanWen
+ *     time  : 2026/10/17
+ *     desc  : LogUtils 按标签的级别、限流与采样
+ * </pre>
+ * <p>规则表写时复制，读的时候不加锁，一次 HashMap 查找；没有规则时直接返回</p>
+ * <p>每条规则可以单独设置：</p>
+ * <ul>
+ * <li>级别：代替全局的控制台与文件过滤级别</li>
+ * <li>采样比例：按比例均匀保留，如 0.1 表示每 10 条留 1 条</li>
+ * <li>令牌桶：每秒补充 permitsPerSecond 个令牌，最多攒 burst 个，没有令牌时丢弃</li>
+ * </ul>
+ * <p>被规则丢弃的日志按标签计数</p>
+ */
+final class LogTagFilter {
+
+    /**
+     * 未设置级别，沿用全局过滤级别
+     */
+    static final int LEVEL_UNSET = 0;
+
+    private volatile Map<String, Rule> rules    = Collections.emptyMap();
+    private volatile int               minLevel = Integer.MAX_VALUE;
+
+    /**
+     * @return 该标签的规则，没有时为 {@code null}
+     */
+    Rule ruleOf(final String tag) {
+        if (tag == null) return null;
+        final Map<String, Rule> rules = this.rules;
+        return rules.isEmpty() ? null : rules.get(tag);
+    }
+
+    /**
+     * @return 所有规则中设置的最低级别，没有时为 {@link Integer#MAX_VALUE}
+     */
+    int minLevel() {
+        return minLevel;
+    }
+
+    synchronized void setLevel(final String tag, final int level) {
+        final Rule old = rules.get(tag);
+        put(tag, old == null
+                ? new Rule(level, 0, 0, 1f, new AtomicLong())
+                : new Rule(level, old.permitsPerSecond, old.burst, old.sampleRatio, old.dropped));
+    }
+
+    synchronized void setRateLimit(final String tag, final double permitsPerSecond, final int burst) {
+        final Rule old = rules.get(tag);
+        put(tag, old == null
+                ? new Rule(LEVEL_UNSET, permitsPerSecond, burst, 1f, new AtomicLong())
+                : new Rule(old.level, permitsPerSecond, burst, old.sampleRatio, old.dropped));
+    }
+
+    synchronized void setSampleRatio(final String tag, final float sampleRatio) {
+        final Rule old = rules.get(tag);
+        put(tag, old == null
+                ? new Rule(LEVEL_UNSET, 0, 0, sampleRatio, new AtomicLong())
+                : new Rule(old.level, old.permitsPerSecond, old.burst, sampleRatio, old.dropped));
+    }
+
+    synchronized void remove(final String tag) {
+        if (!rules.containsKey(tag)) return;
+        final Map<String, Rule> copy = new HashMap<>(rules);
+        copy.remove(tag);
+        publish(copy);
+    }
+
+    synchronized void clear() {
+        publish(new HashMap<String, Rule>());
+    }
+
+    /**
+     * @return 各标签被规则丢弃的条数
+     */
+    Map<String, Long> droppedCounts() {
+        final Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, Rule> entry : rules.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().dropped.get());
+        }
+        return counts;
+    }
+
+    private void put(final String tag, final Rule rule) {
+        final Map<String, Rule> copy = new HashMap<>(rules);
+        copy.put(tag, rule);
+        publish(copy);
+    }
+
+    private void publish(final Map<String, Rule> copy) {
+        int min = Integer.MAX_VALUE;
+        for (Rule rule : copy.values()) {
+            if (rule.level != LEVEL_UNSET) min = Math.min(min, rule.level);
+        }
+        rules = copy.isEmpty() ? Collections.<String, Rule>emptyMap() : copy;
+        minLevel = min;
+    }
+
+    static final class Rule {
+        final int        level;
+        final double     permitsPerSecond;
+        final int        burst;
+        final float      sampleRatio;
+        final AtomicLong dropped;
+
+        private double tokens;
+        private long   lastRefill;
+        private long   seen;
+
+        Rule(final int level, final double permitsPerSecond, final int burst,
+             final float sampleRatio, final AtomicLong dropped) {
+            this.level = level;
+            this.permitsPerSecond = Math.max(0, permitsPerSecond);
+            this.burst = Math.max(1, burst);
+            this.sampleRatio = Math.max(0f, Math.min(1f, sampleRatio));
+            this.dropped = dropped;
+            this.tokens = this.burst;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * @return 该级别的日志是否通过本规则的级别，未设置级别时返回 {@code defaultFilter} 的判断
+         */
+        boolean accepts(final int type, final int defaultFilter) {
+            return type >= (level == LEVEL_UNSET ? defaultFilter : level);
+        }
+
+        /**
+         * 记一条因级别被丢弃的日志
+         */
+        void drop() {
+            dropped.incrementAndGet();
+        }
+
+        /**
+         * 依次经过采样与令牌桶，不通过时计数
+         *
+         * @return {@code true}: 保留
+         */
+        boolean tryAcquire() {
+            if (sampleRatio >= 1f && permitsPerSecond <= 0) return true;
+            synchronized (this) {
+                if (sampleRatio < 1f) {
+                    // 第 n 条在 floor(n * ratio) 增加时保留，保留的日志均匀分布
+                    final long n = seen++;
+                    if ((long) ((n + 1) * (double) sampleRatio) == (long) (n * (double) sampleRatio)) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                }
+                if (permitsPerSecond > 0) {
+                    final long now = System.nanoTime();
+                    tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerSecond / 1e9);
+                    lastRefill = now;
+                    if (tokens < 1) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                    tokens -= 1;
+                }
+                return true;
+            }
+        }
+    }
+}
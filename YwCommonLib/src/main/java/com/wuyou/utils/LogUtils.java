@@ -12,6 +12,7 @@ import android.os.Build;
 import android.os.Environment;
 import android.util.Log;
 
+import androidx.annotation.FloatRange;
 import androidx.annotation.IntDef;
 import androidx.annotation.IntRange;
 
@@ -19,23 +20,19 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.text.Format;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
-import java.util.Formatter;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.List;
+import java.util.Map;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
@@ -66,6 +63,62 @@ public final class LogUtils {
     private @interface TYPE {
     }
 
+    /**
+     * 写文件缓冲满时的策略：阻塞调用方，直到后台线程腾出空间
+     */
+    public static final int OVERFLOW_BLOCK  = 0;
+    /**
+     * 写文件缓冲满时的策略：丢弃新日志
+     */
+    public static final int OVERFLOW_DROP   = 1;
+    /**
+     * 写文件缓冲满时的策略：缓冲超过四分之三后按比例采样，满了丢弃
+     */
+    public static final int OVERFLOW_SAMPLE = 2;
+
+    @IntDef({OVERFLOW_BLOCK, OVERFLOW_DROP, OVERFLOW_SAMPLE})
+    @Retention(RetentionPolicy.SOURCE)
+    private @interface OVERFLOW {
+    }
+
+    /**
+     * 调用位置：不获取，日志不带位置，标签为空时用默认标签
+     */
+    public static final int LOCATION_OFF     = 0;
+    /**
+     * 调用位置：每次都获取并重新解析
+     */
+    public static final int LOCATION_FULL    = 1;
+    /**
+     * 调用位置：每次都获取，同一位置解析后的结果缓存复用，默认
+     * <p>每条日志仍要 new Throwable().getStackTrace()，缓存只省去拼接；要减少获取调用栈的开销请用
+     * {@link #LOCATION_OFF} 或 {@link #LOCATION_SAMPLED}</p>
+     */
+    public static final int LOCATION_CACHED  = 2;
+    /**
+     * 调用位置：按采样间隔获取，其余日志不带位置；没有指定标签的日志统一用默认标签，不用调用方的类名
+     */
+    public static final int LOCATION_SAMPLED = 3;
+
+    @IntDef({LOCATION_OFF, LOCATION_FULL, LOCATION_CACHED, LOCATION_SAMPLED})
+    @Retention(RetentionPolicy.SOURCE)
+    private @interface LOCATION {
+    }
+
+    /**
+     * 日志文件格式：可读文本，扩展名 .txt，默认
+     */
+    public static final int FILE_FORMAT_TEXT   = 0;
+    /**
+     * 日志文件格式：紧凑的二进制记录，扩展名 {@link LogBinary#EXTENSION}，用 {@link LogBinary} 解码
+     */
+    public static final int FILE_FORMAT_BINARY = 1;
+
+    @IntDef({FILE_FORMAT_TEXT, FILE_FORMAT_BINARY})
+    @Retention(RetentionPolicy.SOURCE)
+    private @interface FILE_FORMAT {
+    }
+
     private static final char[] T = new char[]{'V', 'D', 'I', 'W', 'E', 'A'};
 
     private static final int FILE = 0x10;
@@ -89,9 +142,16 @@ public final class LogUtils {
     private static final String NOTHING        = "log nothing";
     private static final String NULL           = "null";
     private static final String ARGS           = "args";
+    private static final String PLACEHOLDER    = "{}";
+    private static final String RING_EXTENSION = ".ring";
+    private static final String DEFAULT_TAG    = "LogUtils";
     private static final Config CONFIG         = new Config();
+    private static final LogLocator LOCATOR    = new LogLocator(LogUtils.class);
+    private static final LogTagFilter TAG_FILTER = new LogTagFilter();
 
-    private static ExecutorService sExecutor;
+    private static volatile LogAppender sAppender;
+    private static volatile Day         sDay;
+    private static volatile LogRing     sRing;
     private static String          sDefaultDir;// log 默认存储目录
     private static String          sDir;       // log 存储目录
     private static String  sFilePrefix        = "util";// log 文件前缀
@@ -105,6 +165,17 @@ public final class LogUtils {
     private static int     sConsoleFilter     = V;     // log 控制台过滤器
     private static int     sFileFilter        = V;     // log 文件过滤器
     private static int     sStackDeep         = 1;     // log 栈深度
+    private static int     sFileFormat         = FILE_FORMAT_TEXT;  // log 文件格式
+    private static int     sFileBufferCapacity = 1024;              // log 写文件缓冲条数
+    private static int     sOverflowPolicy     = OVERFLOW_BLOCK;    // log 写文件缓冲满时的策略
+    private static int     sSampleRate         = 10;                // log 采样时保留 1/sSampleRate
+    private static int     sFlushBytes         = 8 * 1024;          // log 攒够多少字节刷盘
+    private static long    sFlushInterval      = 1000;              // log 最多隔多久刷盘，单位毫秒
+    private static long    sMaxFileBytes       = 0;                 // log 单个文件字节上限，0 不限
+    private static int     sMaxFiles           = 0;                 // log 文件个数上限，0 不限
+    private static long    sMaxTotalBytes      = 0;                 // log 文件总字节上限，0 不限
+    private static boolean sCompress           = false;             // log 是否压缩写完的文件
+    private static int     sRingBytes          = 0;                 // log 环形缓冲字节数，0 不用
 
     private LogUtils() {
         throw new UnsupportedOperationException("U can't instantiate me...");
@@ -114,54 +185,323 @@ public final class LogUtils {
         return CONFIG;
     }
 
+    /**
+     * 等待已写入的文件日志全部落盘
+     *
+     * @param timeoutMillis 最多等待的时长，单位毫秒
+     * @return {@code false}: 超时
+     */
+    public static boolean flush(final long timeoutMillis) {
+        final LogAppender appender = sAppender;
+        return appender == null || appender.flush(timeoutMillis);
+    }
+
+    /**
+     * 测量各调用位置模式下取一次标签与头部的耗时，用来在真机上比较各模式的开销
+     * <p>测量期间会临时切换全局的模式，其他线程的日志也受影响，不对外公开，只在调试时从同一个包内调用</p>
+     *
+     * @param iterations 每种模式的调用次数
+     * @return 每种模式平均每次的耗时，单位纳秒
+     */
+    static String benchmarkLocation(@IntRange(from = 1) final int iterations) {
+        final int mode = LOCATOR.getMode();
+        final int[] modes = {LOCATION_OFF, LOCATION_FULL, LOCATION_CACHED, LOCATION_SAMPLED};
+        final String[] names = {"off", "full", "cached", "sampled"};
+        final StringBuilder sb = new StringBuilder();
+        try {
+            for (int m = 0; m < modes.length; m++) {
+                LOCATOR.setMode(modes[m]);
+                for (int i = 0; i < iterations; i++) {
+                    processTagAndHead(sGlobalTag);
+                }
+                final long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    processTagAndHead(sGlobalTag);
+                }
+                final long cost = (System.nanoTime() - start) / iterations;
+                sb.append(names[m]).append(": ").append(cost).append(" ns/op").append(LINE_SEP);
+            }
+        } finally {
+            LOCATOR.setMode(mode);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 写文件缓冲满时按溢出策略丢弃的日志条数
+     */
+    public static long getDroppedCount() {
+        final LogAppender appender = sAppender;
+        return appender == null ? 0 : appender.getDroppedCount();
+    }
+
+    /**
+     * 判断某一级别的日志是否会输出到控制台或文件，拼接参数开销较大时可先判断再调用
+     *
+     * @param type {@link #V}、{@link #D}、{@link #I}、{@link #W}、{@link #E} 或 {@link #A}
+     * @return {@code true}: 会输出
+     */
+    public static boolean isLoggable(@TYPE final int type) {
+        return isLoggable(sGlobalTag, type);
+    }
+
+    /**
+     * 判断某一标签某一级别的日志是否会输出到控制台或文件，考虑该标签的级别规则，不消耗限流与采样
+     *
+     * @param tag  标签，为空时标签取自调用位置，只要有标签规则可能放行就返回 {@code true}
+     * @param type {@link #V}、{@link #D}、{@link #I}、{@link #W}、{@link #E} 或 {@link #A}
+     * @return {@code true}: 会输出
+     */
+    public static boolean isLoggable(final String tag, @TYPE final int type) {
+        if (!sLogSwitch) return false;
+        final String knownTag = knownTagOf(tag);
+        final LogTagFilter.Rule rule = TAG_FILTER.ruleOf(knownTag);
+        final int floor = knownTag == null ? TAG_FILTER.minLevel() : Integer.MAX_VALUE;
+        return (sLog2ConsoleSwitch && accepts(rule, type, Math.min(sConsoleFilter, floor)))
+                || (sLog2FileSwitch && accepts(rule, type, Math.min(sFileFilter, floor)));
+    }
+
+    /**
+     * @return 各标签被标签规则（级别、限流、采样）丢弃的条数
+     */
+    public static Map<String, Long> getTagDroppedCounts() {
+        return TAG_FILTER.droppedCounts();
+    }
+
     public static void v(final Object... contents) {
         log(V, sGlobalTag, contents);
     }
 
+    public static void v(final String format, final Object arg) {
+        if (!isLoggable(V)) return;
+        log(V, sGlobalTag, format, arg);
+    }
+
+    public static void v(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(V)) return;
+        log(V, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void v(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(V)) return;
+        log(V, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void vTag(final String tag, final Object... contents) {
         log(V, tag, contents);
     }
 
+    public static void vTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, V)) return;
+        log(V, tag, format, arg);
+    }
+
+    public static void vTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, V)) return;
+        log(V, tag, format, arg1, arg2);
+    }
+
+    public static void vTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, V)) return;
+        log(V, tag, format, arg1, arg2, arg3);
+    }
+
     public static void d(final Object... contents) {
         log(D, sGlobalTag, contents);
     }
 
+    public static void d(final String format, final Object arg) {
+        if (!isLoggable(D)) return;
+        log(D, sGlobalTag, format, arg);
+    }
+
+    public static void d(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(D)) return;
+        log(D, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void d(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(D)) return;
+        log(D, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void dTag(final String tag, final Object... contents) {
         log(D, tag, contents);
     }
 
+    public static void dTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, D)) return;
+        log(D, tag, format, arg);
+    }
+
+    public static void dTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, D)) return;
+        log(D, tag, format, arg1, arg2);
+    }
+
+    public static void dTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, D)) return;
+        log(D, tag, format, arg1, arg2, arg3);
+    }
+
     public static void i(final Object... contents) {
         log(I, sGlobalTag, contents);
     }
 
+    public static void i(final String format, final Object arg) {
+        if (!isLoggable(I)) return;
+        log(I, sGlobalTag, format, arg);
+    }
+
+    public static void i(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(I)) return;
+        log(I, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void i(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(I)) return;
+        log(I, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void iTag(final String tag, final Object... contents) {
         log(I, tag, contents);
     }
 
+    public static void iTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, I)) return;
+        log(I, tag, format, arg);
+    }
+
+    public static void iTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, I)) return;
+        log(I, tag, format, arg1, arg2);
+    }
+
+    public static void iTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, I)) return;
+        log(I, tag, format, arg1, arg2, arg3);
+    }
+
     public static void w(final Object... contents) {
         log(W, sGlobalTag, contents);
     }
 
+    public static void w(final String format, final Object arg) {
+        if (!isLoggable(W)) return;
+        log(W, sGlobalTag, format, arg);
+    }
+
+    public static void w(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(W)) return;
+        log(W, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void w(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(W)) return;
+        log(W, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void wTag(final String tag, final Object... contents) {
         log(W, tag, contents);
     }
 
+    public static void wTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, W)) return;
+        log(W, tag, format, arg);
+    }
+
+    public static void wTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, W)) return;
+        log(W, tag, format, arg1, arg2);
+    }
+
+    public static void wTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, W)) return;
+        log(W, tag, format, arg1, arg2, arg3);
+    }
+
     public static void e(final Object... contents) {
         log(E, sGlobalTag, contents);
     }
 
+    public static void e(final String format, final Object arg) {
+        if (!isLoggable(E)) return;
+        log(E, sGlobalTag, format, arg);
+    }
+
+    public static void e(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(E)) return;
+        log(E, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void e(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(E)) return;
+        log(E, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void eTag(final String tag, final Object... contents) {
         log(E, tag, contents);
     }
 
+    public static void eTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, E)) return;
+        log(E, tag, format, arg);
+    }
+
+    public static void eTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, E)) return;
+        log(E, tag, format, arg1, arg2);
+    }
+
+    public static void eTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, E)) return;
+        log(E, tag, format, arg1, arg2, arg3);
+    }
+
     public static void a(final Object... contents) {
         log(A, sGlobalTag, contents);
     }
 
+    public static void a(final String format, final Object arg) {
+        if (!isLoggable(A)) return;
+        log(A, sGlobalTag, format, arg);
+    }
+
+    public static void a(final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(A)) return;
+        log(A, sGlobalTag, format, arg1, arg2);
+    }
+
+    public static void a(final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(A)) return;
+        log(A, sGlobalTag, format, arg1, arg2, arg3);
+    }
+
     public static void aTag(final String tag, final Object... contents) {
         log(A, tag, contents);
     }
 
+    public static void aTag(final String tag, final String format, final Object arg) {
+        if (!isLoggable(tag, A)) return;
+        log(A, tag, format, arg);
+    }
+
+    public static void aTag(final String tag, final String format, final Object arg1, final Object arg2) {
+        if (!isLoggable(tag, A)) return;
+        log(A, tag, format, arg1, arg2);
+    }
+
+    public static void aTag(final String tag, final String format,
+                            final Object arg1, final Object arg2, final Object arg3) {
+        if (!isLoggable(tag, A)) return;
+        log(A, tag, format, arg1, arg2, arg3);
+    }
+
     public static void file(final Object content) {
         log(FILE | D, sGlobalTag, content);
     }
@@ -213,69 +553,89 @@ public final class LogUtils {
     private static void log(final int type, final String tag, final Object... contents) {
         if (!sLogSwitch || (!sLog2ConsoleSwitch && !sLog2FileSwitch)) return;
         int type_low = type & 0x0f, type_high = type & 0xf0;
-        if (type_low < sConsoleFilter && type_low < sFileFilter) return;
+        // 标签为空时要取调用栈才知道最终标签，先按所有标签规则中最低的级别放行，取到标签后再判断
+        final String knownTag = knownTagOf(tag);
+        LogTagFilter.Rule rule = TAG_FILTER.ruleOf(knownTag);
+        final int floor = knownTag == null ? TAG_FILTER.minLevel() : Integer.MAX_VALUE;
+        boolean toConsole = sLog2ConsoleSwitch && type_high != FILE
+                && accepts(rule, type_low, Math.min(sConsoleFilter, floor));
+        boolean toFile = (sLog2FileSwitch || type_high == FILE)
+                && accepts(rule, type_low, Math.min(sFileFilter, floor));
+        // 两边都不输出或被限流、采样丢弃时直接返回，不取调用栈、不拼接内容
+        if (!pass(rule, toConsole || toFile)) return;
         final TagHead tagHead = processTagAndHead(tag);
+        if (knownTag == null) {
+            rule = TAG_FILTER.ruleOf(tagHead.tag);
+            toConsole = toConsole && accepts(rule, type_low, sConsoleFilter);
+            toFile = toFile && accepts(rule, type_low, sFileFilter);
+            if (!pass(rule, toConsole || toFile)) return;
+        }
         String body = processBody(type_high, contents);
-        if (sLog2ConsoleSwitch && type_low >= sConsoleFilter && type_high != FILE) {
+        if (toConsole) {
             print2Console(type_low, tagHead.tag, tagHead.consoleHead, body);
         }
-        if ((sLog2FileSwitch || type_high == FILE) && type_low >= sFileFilter) {
+        if (toFile) {
             print2File(type_low, tagHead.tag, tagHead.fileHead + body);
         }
     }
 
+    /**
+     * @return 不取调用栈就能确定的最终标签，要从调用位置得到时为 {@code null}
+     */
+    private static String knownTagOf(final String tag) {
+        if (!sTagIsSpace && !sLogHeadSwitch) return sGlobalTag;
+        return sTagIsSpace && isSpace(tag) ? null : tag;
+    }
+
+    private static boolean accepts(final LogTagFilter.Rule rule, final int type, final int filter) {
+        return rule == null ? type >= filter : rule.accepts(type, filter);
+    }
+
+    /**
+     * @param accepted 是否通过级别过滤
+     * @return 是否通过级别过滤以及该标签的采样与限流，不通过时计入该标签的丢弃数
+     */
+    private static boolean pass(final LogTagFilter.Rule rule, final boolean accepted) {
+        if (rule == null) return accepted;
+        if (!accepted) {
+            rule.drop();
+            return false;
+        }
+        return rule.tryAcquire();
+    }
+
     private static TagHead processTagAndHead(String tag) {
         if (!sTagIsSpace && !sLogHeadSwitch) {
             tag = sGlobalTag;
         } else {
-            final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
-            StackTraceElement targetElement = stackTrace[3];
-            String fileName = targetElement.getFileName();
-            String className;
-            // 混淆可能会导致获取为空 加-keepattributes SourceFile,LineNumberTable
-            if (fileName == null) {
-                className = targetElement.getClassName();
-                String[] classNameInfo = className.split("\\.");
-                if (classNameInfo.length > 0) {
-                    className = classNameInfo[classNameInfo.length - 1];
-                }
-                int index = className.indexOf('$');
-                if (index != -1) {
-                    className = className.substring(0, index);
-                }
-                fileName = className + ".java";
-            } else {
-                int index = fileName.indexOf('.');// 混淆可能导致文件名被改变从而找不到"."
-                className = index == -1 ? fileName : fileName.substring(0, index);
+            // 采样模式下只有部分日志取得到类名，标签为空时统一用默认标签，同一位置的日志不会时而换标签
+            final int mode = LOCATOR.getMode();
+            if (sTagIsSpace && isSpace(tag) && (mode == LOCATION_SAMPLED || mode == LOCATION_OFF)) {
+                tag = DEFAULT_TAG;
+                if (!sLogHeadSwitch) return new TagHead(tag, null, ": ");
             }
-            if (sTagIsSpace) tag = isSpace(tag) ? className : tag;
+            final StackTraceElement[] stackTrace =
+                    LOCATOR.locate(sLogHeadSwitch ? Math.max(1, sStackDeep) : 1);
+            if (stackTrace == null) {
+                // 本次不取调用位置，标签为空时用默认标签
+                if (sTagIsSpace && isSpace(tag)) tag = DEFAULT_TAG;
+                return new TagHead(tag, null, ": ");
+            }
+            final Site site = siteOf(stackTrace[0]);
+            if (sTagIsSpace) tag = isSpace(tag) ? site.className : tag;
             if (sLogHeadSwitch) {
                 String tName = Thread.currentThread().getName();
-                final String head = new Formatter()
-                        .format("%s, %s(%s:%d)",
-                                tName,
-                                targetElement.getMethodName(),
-                                fileName,
-                                targetElement.getLineNumber())
-                        .toString();
+                final String head = tName + ", " + site.location;
                 final String fileHead = " [" + head + "]: ";
-                if (sStackDeep <= 1) {
+                if (stackTrace.length <= 1) {
                     return new TagHead(tag, new String[]{head}, fileHead);
                 } else {
-                    final String[] consoleHead =
-                            new String[Math.min(sStackDeep, stackTrace.length - 3)];
+                    final String[] consoleHead = new String[stackTrace.length];
                     consoleHead[0] = head;
-                    int spaceLen = tName.length() + 2;
-                    String space = new Formatter().format("%" + spaceLen + "s", "").toString();
+                    final char[] space = new char[tName.length() + 2];
+                    Arrays.fill(space, ' ');
                     for (int i = 1, len = consoleHead.length; i < len; ++i) {
-                        targetElement = stackTrace[i + 3];
-                        consoleHead[i] = new Formatter()
-                                .format("%s%s(%s:%d)",
-                                        space,
-                                        targetElement.getMethodName(),
-                                        targetElement.getFileName(),
-                                        targetElement.getLineNumber())
-                                .toString();
+                        consoleHead[i] = new String(space) + siteOf(stackTrace[i]).location;
                     }
                     return new TagHead(tag, consoleHead, fileHead);
                 }
@@ -284,6 +644,36 @@ public final class LogUtils {
         return new TagHead(tag, null, ": ");
     }
 
+    /**
+     * 解析调用位置的类名与 "方法名(文件名:行号)"，{@link #LOCATION_CACHED} 模式下同一位置只解析一次
+     */
+    private static Site siteOf(final StackTraceElement element) {
+        Site site = (Site) LOCATOR.getCached(element);
+        if (site != null) return site;
+        String fileName = element.getFileName();
+        String className;
+        // 混淆可能会导致获取为空 加-keepattributes SourceFile,LineNumberTable
+        if (fileName == null) {
+            className = element.getClassName();
+            String[] classNameInfo = className.split("\\.");
+            if (classNameInfo.length > 0) {
+                className = classNameInfo[classNameInfo.length - 1];
+            }
+            int index = className.indexOf('$');
+            if (index != -1) {
+                className = className.substring(0, index);
+            }
+            fileName = className + ".java";
+        } else {
+            int index = fileName.indexOf('.');// 混淆可能导致文件名被改变从而找不到"."
+            className = index == -1 ? fileName : fileName.substring(0, index);
+        }
+        site = new Site(className,
+                element.getMethodName() + "(" + fileName + ":" + element.getLineNumber() + ")");
+        LOCATOR.putCached(element, site);
+        return site;
+    }
+
     private static String processBody(final int type, final Object... contents) {
         String body = NULL;
         if (contents != null) {
@@ -295,6 +685,8 @@ public final class LogUtils {
                 } else if (type == XML) {
                     body = formatXml(body);
                 }
+            } else if (isTemplate(contents)) {
+                body = formatTemplate(contents);
             } else {
                 StringBuilder sb = new StringBuilder();
                 for (int i = 0, len = contents.length; i < len; ++i) {
@@ -313,6 +705,33 @@ public final class LogUtils {
         return body.length() == 0 ? NOTHING : body;
     }
 
+    /**
+     * 第一个参数是含有 "{}" 的字符串时按模板处理，否则仍按 args[i] 逐个输出
+     */
+    private static boolean isTemplate(final Object[] contents) {
+        return contents[0] instanceof String && ((String) contents[0]).indexOf(PLACEHOLDER) != -1;
+    }
+
+    /**
+     * 依次用后面的参数替换模板中的 "{}"，多出的参数若最后一个是异常则附上其调用栈
+     */
+    private static String formatTemplate(final Object[] contents) {
+        final String format = (String) contents[0];
+        final StringBuilder sb = new StringBuilder(format.length() + 16 * contents.length);
+        int argIndex = 1, start = 0, index;
+        while (argIndex < contents.length && (index = format.indexOf(PLACEHOLDER, start)) != -1) {
+            final Object arg = contents[argIndex++];
+            sb.append(format, start, index).append(arg == null ? NULL : arg.toString());
+            start = index + PLACEHOLDER.length();
+        }
+        sb.append(format, start, format.length());
+        final Object last = contents[contents.length - 1];
+        if (argIndex < contents.length && last instanceof Throwable) {
+            sb.append(LINE_SEP).append(Log.getStackTraceString((Throwable) last));
+        }
+        return sb.toString();
+    }
+
     private static String formatJson(String json) {
         try {
             if (json.startsWith("{")) {
@@ -396,16 +815,27 @@ public final class LogUtils {
     }
 
     private static void print2File(final int type, final String tag, final String msg) {
-        Date now = new Date(System.currentTimeMillis());
+        final LogAppender appender = getAppender();
+        // 同时写进环形缓冲，进程在追加器刷盘前被杀也能在下次启动时找回
+        append(appender, System.currentTimeMillis(), type, tag, msg, sRing != null);
+    }
+
+    private static void append(final LogAppender appender, final long millis, final int type,
+                               final String tag, final String msg, final boolean toRing) {
+        if (sFileFormat == FILE_FORMAT_BINARY) {
+            // 二进制格式不在调用线程格式化时间，编码交给写文件线程
+            final String fullPath = (sDir == null ? sDefaultDir : sDir)
+                    + sFilePrefix + "-" + dayOf(millis) + LogBinary.EXTENSION;
+            final LogBinary.Record record = new LogBinary.Record(millis, type, tag, msg);
+            appender.append(fullPath, record, toRing ? record : null);
+            return;
+        }
+        Date now = new Date(millis);
         String format = FORMAT.format(now);
         String date = format.substring(0, 5);
         String time = format.substring(6);
         final String fullPath =
                 (sDir == null ? sDefaultDir : sDir) + sFilePrefix + "-" + date + ".txt";
-        if (!createOrExistsFile(fullPath)) {
-            Log.e(tag, "log to " + fullPath + " failed!");
-            return;
-        }
         StringBuilder sb = new StringBuilder();
         sb.append(time)
                 .append(T[type - V])
@@ -413,29 +843,73 @@ public final class LogUtils {
                 .append(tag)
                 .append(msg)
                 .append(LINE_SEP);
-        final String content = sb.toString();
-        if (input2File(content, fullPath)) {
-            Log.d(tag, "log to " + fullPath + " success!");
-        } else {
-            Log.e(tag, "log to " + fullPath + " failed!");
+        appender.append(fullPath, sb.toString(), toRing ? new LogBinary.Record(millis, type, tag, msg) : null);
+    }
+
+    /**
+     * @return 日志文件名中的日期 "MM-dd"，同一天内只格式化一次
+     */
+    private static String dayOf(final long now) {
+        Day day = sDay;
+        if (day == null || now < day.start || now >= day.end) {
+            final Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            final long start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            @SuppressLint("SimpleDateFormat")
+            final String name = new SimpleDateFormat("MM-dd").format(new Date(now));
+            day = new Day(start, calendar.getTimeInMillis(), name);
+            sDay = day;
         }
+        return day.name;
     }
 
-    private static boolean createOrExistsFile(final String filePath) {
-        File file = new File(filePath);
-        if (file.exists()) return file.isFile();
-        if (!createOrExistsDir(file.getParentFile())) return false;
-        try {
-            boolean isCreate = file.createNewFile();
-            if (isCreate) printDeviceInfo(filePath);
-            return isCreate;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    /**
+     * 写文件的追加器，第一次写文件时创建，文件在后台线程上打开并保持打开
+     */
+    private static LogAppender getAppender() {
+        if (sAppender == null) {
+            synchronized (LogUtils.class) {
+                if (sAppender == null) {
+                    final LogAppender appender = new LogAppender(sFileBufferCapacity, getDeviceInfo());
+                    appender.setOverflowPolicy(sOverflowPolicy, sSampleRate);
+                    appender.setFlushPolicy(sFlushBytes, sFlushInterval);
+                    appender.setRotation(sMaxFileBytes, sMaxFiles, sMaxTotalBytes, sCompress);
+                    sAppender = appender;
+                    if (sRingBytes > 0) openRing(appender);
+                }
+            }
         }
+        return sAppender;
     }
 
-    private static void printDeviceInfo(final String filePath) {
+    /**
+     * 打开环形缓冲，把上次进程退出前没写入日志文件的记录按原来的时间写入日志文件
+     */
+    private static void openRing(final LogAppender appender) {
+        final List<LogRing.Entry> recovered = new ArrayList<>();
+        final LogRing ring = LogRing.open(
+                new File((sDir == null ? sDefaultDir : sDir) + sFilePrefix + RING_EXTENSION), sRingBytes, recovered);
+        if (ring == null) return;
+        for (LogRing.Entry entry : recovered) {
+            append(appender, entry.time, entry.type, entry.tag, entry.msg, false);
+        }
+        if (!recovered.isEmpty()) {
+            append(appender, System.currentTimeMillis(), W, "LogRing",
+                    ": recovered " + recovered.size() + " records lost at last exit", false);
+        }
+        appender.setRing(ring);
+        sRing = ring;
+    }
+
+    /**
+     * @return 新建日志文件时写在开头的设备信息
+     */
+    private static String getDeviceInfo() {
         String versionName = "";
         int versionCode = 0;
         try {
@@ -457,11 +931,7 @@ public final class LogUtils {
                 "\nApp VersionName    : " + versionName +
                 "\nApp VersionCode    : " + versionCode +
                 "\n************* Log Head ****************\n\n";
-        input2File(head, filePath);
-    }
-
-    private static boolean createOrExistsDir(final File file) {
-        return file != null && (file.exists() ? file.isDirectory() : file.mkdirs());
+        return head;
     }
 
     private static boolean isSpace(final String s) {
@@ -474,42 +944,6 @@ public final class LogUtils {
         return true;
     }
 
-    private static boolean input2File(final String input, final String filePath) {
-        if (sExecutor == null) {
-            sExecutor = Executors.newSingleThreadExecutor();
-        }
-        Future<Boolean> submit = sExecutor.submit(new Callable<Boolean>() {
-            @Override
-            public Boolean call() throws Exception {
-                BufferedWriter bw = null;
-                try {
-                    bw = new BufferedWriter(new FileWriter(filePath, true));
-                    bw.write(input);
-                    return true;
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    return false;
-                } finally {
-                    try {
-                        if (bw != null) {
-                            bw.close();
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
-        try {
-            return submit.get();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (ExecutionException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
     public static class Config {
         private Config() {
             if (sDefaultDir != null) return;
@@ -595,6 +1029,170 @@ public final class LogUtils {
             return this;
         }
 
+        /**
+         * 设置调用位置的获取方式，默认 {@link #LOCATION_CACHED}
+         * <p>{@link #LOCATION_FULL} 与 {@link #LOCATION_CACHED} 每条日志都要获取一次调用栈，CACHED 只省去拼接；
+         * 只有 {@link #LOCATION_OFF} 与 {@link #LOCATION_SAMPLED} 减少获取调用栈的开销</p>
+         * <p>{@link #LOCATION_OFF} 与 {@link #LOCATION_SAMPLED} 下没有指定标签的日志统一用默认标签 "LogUtils"，
+         * 采样模式若按类名取标签，同一位置的日志会时而用类名时而用默认标签，按标签过滤、限流都会失效；
+         * 需要按标签区分时请显式指定标签</p>
+         *
+         * @param mode {@link #LOCATION_OFF}、{@link #LOCATION_FULL}、{@link #LOCATION_CACHED} 或 {@link #LOCATION_SAMPLED}
+         */
+        public Config setLocationMode(@LOCATION final int mode) {
+            LOCATOR.setMode(mode);
+            return this;
+        }
+
+        /**
+         * 设置 {@link #LOCATION_SAMPLED} 模式下的采样间隔，每 sampleRate 条日志取一次调用位置，默认 16
+         */
+        public Config setLocationSampleRate(@IntRange(from = 1) final int sampleRate) {
+            LOCATOR.setSampleRate(sampleRate);
+            return this;
+        }
+
+        /**
+         * 设置日志文件格式，默认 {@link #FILE_FORMAT_TEXT}
+         * <p>{@link #FILE_FORMAT_BINARY} 不在调用线程格式化时间与拼接内容，文件约为文本的三分之一，
+         * 导出后用 {@link LogBinary} 解码成文本</p>
+         *
+         * @param format {@link #FILE_FORMAT_TEXT} 或 {@link #FILE_FORMAT_BINARY}
+         */
+        public Config setFileFormat(@FILE_FORMAT final int format) {
+            sFileFormat = format;
+            return this;
+        }
+
+        /**
+         * 设置日志文件的滚动与清理，默认只按日期换文件、不压缩、不清理
+         * <p>单个文件超过 maxFileBytes 时改名为 "前缀-MM-dd.序号.扩展名" 后写新文件；写完的文件在后台压缩成 .gz，
+         * 文件数或总字节数超过上限时从最旧的开始删除</p>
+         *
+         * @param maxFileBytes  单个文件的字节上限，0 表示不按大小滚动
+         * @param maxFiles      同一前缀的日志文件个数上限，0 表示不限
+         * @param maxTotalBytes 同一前缀的日志文件总字节数上限，0 表示不限
+         * @param compress      是否 gzip 压缩写完的文件
+         */
+        public Config setFileRotation(final long maxFileBytes, final int maxFiles,
+                                      final long maxTotalBytes, final boolean compress) {
+            sMaxFileBytes = maxFileBytes;
+            sMaxFiles = maxFiles;
+            sMaxTotalBytes = maxTotalBytes;
+            sCompress = compress;
+            final LogAppender appender = sAppender;
+            if (appender != null) appender.setRotation(maxFileBytes, maxFiles, maxTotalBytes, compress);
+            return this;
+        }
+
+        /**
+         * 设置某一标签的级别，代替全局的控制台与文件过滤级别
+         * <p>如全局设为 {@link #W}，再把某个模块的标签设为 {@link #D}，只有该模块输出调试日志</p>
+         */
+        public Config setTagLevel(final String tag, @TYPE final int level) {
+            TAG_FILTER.setLevel(tag, level);
+            return this;
+        }
+
+        /**
+         * 设置某一标签的限流，每秒最多 permitsPerSecond 条，允许突发 burst 条，超出的丢弃并计数
+         *
+         * @param permitsPerSecond 每秒补充的条数，0 表示不限流
+         * @param burst            最多攒下的条数
+         */
+        public Config setTagRateLimit(final String tag, final double permitsPerSecond,
+                                      @IntRange(from = 1) final int burst) {
+            TAG_FILTER.setRateLimit(tag, permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * 设置某一标签的采样比例，按比例均匀保留，如 0.1 表示每 10 条留 1 条，其余丢弃并计数
+         */
+        public Config setTagSampleRatio(final String tag,
+                                        @FloatRange(from = 0, to = 1) final float sampleRatio) {
+            TAG_FILTER.setSampleRatio(tag, sampleRatio);
+            return this;
+        }
+
+        /**
+         * 移除某一标签的级别、限流与采样设置
+         */
+        public Config removeTagRule(final String tag) {
+            TAG_FILTER.remove(tag);
+            return this;
+        }
+
+        /**
+         * 移除所有标签的级别、限流与采样设置
+         */
+        public Config clearTagRules() {
+            TAG_FILTER.clear();
+            return this;
+        }
+
+        /**
+         * 设置写文件日志的内存映射环形缓冲，默认不用
+         * <p>每条写文件的日志同时写进 "前缀.ring"，只是内存操作；进程在日志写入文件前被杀时，
+         * 下次启动第一次写文件时把这些日志补写进日志文件，崩溃日志后面也会附上最近的记录</p>
+         * <p>环形缓冲在第一次写文件时打开，之后修改大小不生效；设为 0 停止写入，
+         * 已写入的记录视为已写入日志文件，之后不再补写，崩溃日志也不再附带</p>
+         * <p>多个进程用同一个目录和前缀时，只有先打开的进程启用环形缓冲</p>
+         *
+         * @param bytes 环形缓冲的字节数，如 256 KB
+         */
+        public Config setFileRingBuffer(@IntRange(from = 0) final int bytes) {
+            sRingBytes = bytes;
+            synchronized (LogUtils.class) {
+                final LogAppender appender = sAppender;
+                if (bytes <= 0) {
+                    final LogRing ring = sRing;
+                    sRing = null;
+                    if (appender != null) appender.setRing(null);
+                    // 追加器不再写入后才关闭，关闭后不会再有新记录
+                    if (ring != null) ring.close();
+                } else if (appender != null && sRing == null) {
+                    openRing(appender);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 设置写文件缓冲的条数，默认 1024
+         */
+        public Config setFileBufferCapacity(@IntRange(from = 1) final int capacity) {
+            sFileBufferCapacity = capacity;
+            final LogAppender appender = sAppender;
+            if (appender != null) appender.setCapacity(capacity);
+            return this;
+        }
+
+        /**
+         * 设置写文件缓冲满时的策略，默认 {@link #OVERFLOW_BLOCK}
+         *
+         * @param policy     {@link #OVERFLOW_BLOCK}、{@link #OVERFLOW_DROP} 或 {@link #OVERFLOW_SAMPLE}
+         * @param sampleRate {@link #OVERFLOW_SAMPLE} 时每 sampleRate 条保留 1 条
+         */
+        public Config setFileOverflowPolicy(@OVERFLOW final int policy, @IntRange(from = 1) final int sampleRate) {
+            sOverflowPolicy = policy;
+            sSampleRate = sampleRate;
+            final LogAppender appender = sAppender;
+            if (appender != null) appender.setOverflowPolicy(policy, sampleRate);
+            return this;
+        }
+
+        /**
+         * 设置写文件的刷盘时机，攒够 flushBytes 字节或距上次刷盘超过 flushIntervalMillis 时刷盘，默认 8 KB 与 1 秒
+         */
+        public Config setFileFlushPolicy(final int flushBytes, final long flushIntervalMillis) {
+            sFlushBytes = flushBytes;
+            sFlushInterval = flushIntervalMillis;
+            final LogAppender appender = sAppender;
+            if (appender != null) appender.setFlushPolicy(flushBytes, flushIntervalMillis);
+            return this;
+        }
+
         @Override
         public String toString() {
             return "switch: " + sLogSwitch
@@ -607,7 +1205,38 @@ public final class LogUtils {
                     + LINE_SEP + "border: " + sLogBorderSwitch
                     + LINE_SEP + "consoleFilter: " + T[sConsoleFilter - V]
                     + LINE_SEP + "fileFilter: " + T[sFileFilter - V]
-                    + LINE_SEP + "stackDeep: " + sStackDeep;
+                    + LINE_SEP + "stackDeep: " + sStackDeep
+                    + LINE_SEP + "locationMode: " + LOCATOR.getMode()
+                    + LINE_SEP + "tagRules: " + TAG_FILTER.droppedCounts().keySet()
+                    + LINE_SEP + "fileFormat: " + sFileFormat
+                    + LINE_SEP + "fileBufferCapacity: " + sFileBufferCapacity
+                    + LINE_SEP + "fileOverflowPolicy: " + sOverflowPolicy
+                    + LINE_SEP + "fileFlushPolicy: " + sFlushBytes + "B/" + sFlushInterval + "ms"
+                    + LINE_SEP + "fileRotation: " + sMaxFileBytes + "B/" + sMaxFiles + " files/"
+                    + sMaxTotalBytes + "B" + (sCompress ? "/gzip" : "")
+                    + LINE_SEP + "fileRingBuffer: " + sRingBytes + "B";
+        }
+    }
+
+    private static final class Day {
+        final long   start;
+        final long   end;
+        final String name;
+
+        Day(final long start, final long end, final String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+    }
+
+    private static final class Site {
+        final String className;
+        final String location;
+
+        Site(final String className, final String location) {
+            this.className = className;
+            this.location = location;
         }
     }
 
@@ -47,6 +47,8 @@ public final class YwLog {
 
     private static final int JSON_INDENT = 4;
 
+    private static final LogLocator LOCATOR = new LogLocator(YwLog.class);
+
     private YwLog() {
         throw new UnsupportedOperationException("U can't instantiate me...");
     }
@@ -56,6 +58,23 @@ public final class YwLog {
         LOG_DEBUG = isDebug;
     }
 
+    /**
+     * 设置调用位置的获取方式，默认 {@link LogUtils#LOCATION_CACHED}
+     *
+     * @param mode {@link LogUtils#LOCATION_OFF}、{@link LogUtils#LOCATION_FULL}、
+     *             {@link LogUtils#LOCATION_CACHED} 或 {@link LogUtils#LOCATION_SAMPLED}
+     */
+    public static void setLocationMode(int mode) {
+        LOCATOR.setMode(mode);
+    }
+
+    /**
+     * 设置 {@link LogUtils#LOCATION_SAMPLED} 模式下的采样间隔，每 sampleRate 条日志取一次调用位置
+     */
+    public static void setLocationSampleRate(int sampleRate) {
+        LOCATOR.setSampleRate(sampleRate);
+    }
+
     public static void v(String msg) {
         log(VERBOSE, null, msg);
     }
@@ -274,8 +293,17 @@ public final class YwLog {
         if (TextUtils.isEmpty(tag)) {
             tag = TAG;
         }
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        StackTraceElement targetElement = stackTrace[5];
+        StackTraceElement[] stackTrace = LOCATOR.locate(1);
+        String headString = stackTrace == null ? "" : headOf(stackTrace[0]);
+        String msg = (objects == null) ? "Log with null object" : getObjectsString(objects);
+        return new String[]{tag, msg, headString};
+    }
+
+    private static String headOf(StackTraceElement targetElement) {
+        String headString = (String) LOCATOR.getCached(targetElement);
+        if (headString != null) {
+            return headString;
+        }
         String className = targetElement.getClassName();
         String[] classNameInfo = className.split("\\.");
         if (classNameInfo.length > 0) {
@@ -287,9 +315,9 @@ public final class YwLog {
             lineNumber = 0;
         }
         String methodNameShort = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
-        String msg = (objects == null) ? "Log with null object" : getObjectsString(objects);
-        String headString = "[(" + className + ":" + lineNumber + ")#" + methodNameShort + " ] ";
-        return new String[]{tag, msg, headString};
+        headString = "[(" + className + ":" + lineNumber + ")#" + methodNameShort + " ] ";
+        LOCATOR.putCached(targetElement, headString);
+        return headString;
     }
 
     private static String getObjectsString(Object... objects) {